@@ -0,0 +1,14 @@
+-- Indexes for the permission-filtered device listing
+-- (DeviceRepository.findVisibleDevices resolves visibility with EXISTS
+-- sub-queries on user_devices, group_devices and group_members)
+
+SET search_path TO app, public;
+
+-- user_devices is already covered by its (user_id, device_id) primary key.
+-- group_devices and group_members are keyed by group first, so add the
+-- reverse lookups used by the visibility sub-query.
+CREATE INDEX IF NOT EXISTS idx_group_devices_device_id ON app.group_devices(device_id, group_id);
+CREATE INDEX IF NOT EXISTS idx_group_members_user_id ON app.group_members(user_id, group_id);
+
+-- Listings only ever read active devices
+CREATE INDEX IF NOT EXISTS idx_devices_active ON app.devices(id) WHERE is_active = TRUE;
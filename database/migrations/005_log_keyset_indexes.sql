@@ -0,0 +1,15 @@
+-- Composite indexes for keyset pagination of connection and audit logs
+-- (ConnectionLogRepository.find*ConnectionsBefore and
+-- AuditLogRepository.searchAuditLogsBefore seek on (timestamp, id) DESC)
+
+SET search_path TO app, public;
+
+CREATE INDEX IF NOT EXISTS idx_connection_logs_user_start_id
+    ON app.connection_logs(user_id, connection_start DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_connection_logs_device_start_id
+    ON app.connection_logs(device_id, connection_start DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_audit_logs_timestamp_id
+    ON app.audit_logs(timestamp DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_audit_logs_user_timestamp_id
+    ON app.audit_logs(user_id, timestamp DESC, id DESC);
@@ -0,0 +1,221 @@
+-- Monthly range partitioning for app.connection_logs (on connection_start)
+-- and app.audit_logs (on timestamp), plus helper functions used by
+-- PartitionMaintenanceService to create upcoming partitions and apply
+-- the retention policy.
+--
+-- Partitions are named <table>_pYYYYMM and cover one calendar month in UTC.
+-- Rows outside every monthly partition land in <table>_default, and are moved
+-- out automatically when the partition for their month is created.
+
+SET search_path TO app, public;
+
+-- ============================================================================
+-- Partition management functions
+-- ============================================================================
+
+-- Create the partition of app.<p_parent> holding p_month, moving any matching
+-- rows out of the default partition first. Returns the partition name, or
+-- NULL if it already existed.
+CREATE OR REPLACE FUNCTION app.create_monthly_partition(p_parent TEXT, p_key TEXT, p_month DATE)
+RETURNS TEXT AS $$
+DECLARE
+    v_start TIMESTAMPTZ := date_trunc('month', p_month::timestamp) AT TIME ZONE 'UTC';
+    v_end TIMESTAMPTZ := (date_trunc('month', p_month::timestamp) + INTERVAL '1 month') AT TIME ZONE 'UTC';
+    v_name TEXT := p_parent || '_p' || to_char(p_month, 'YYYYMM');
+    v_default TEXT := p_parent || '_default';
+BEGIN
+    IF to_regclass('app.' || v_name) IS NOT NULL THEN
+        RETURN NULL;
+    END IF;
+
+    EXECUTE format('CREATE TABLE app.%I (LIKE app.%I INCLUDING DEFAULTS INCLUDING CONSTRAINTS)',
+                   v_name, p_parent);
+
+    IF to_regclass('app.' || v_default) IS NOT NULL THEN
+        EXECUTE format('WITH moved AS (DELETE FROM app.%I WHERE %I >= $1 AND %I < $2 RETURNING *) '
+                       'INSERT INTO app.%I SELECT * FROM moved',
+                       v_default, p_key, p_key, v_name)
+            USING v_start, v_end;
+    END IF;
+
+    EXECUTE format('ALTER TABLE app.%I ATTACH PARTITION app.%I FOR VALUES FROM (%L) TO (%L)',
+                   p_parent, v_name, v_start, v_end);
+    RETURN v_name;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Make sure partitions exist from the current month through p_months_ahead
+-- months from now. Returns the names of the partitions created.
+CREATE OR REPLACE FUNCTION app.ensure_monthly_partitions(p_parent TEXT, p_key TEXT, p_months_ahead INTEGER)
+RETURNS SETOF TEXT AS $$
+DECLARE
+    v_current DATE := date_trunc('month', now() AT TIME ZONE 'UTC')::date;
+    v_created TEXT;
+BEGIN
+    FOR i IN 0..p_months_ahead LOOP
+        v_created := app.create_monthly_partition(p_parent, p_key, (v_current + make_interval(months => i))::date);
+        IF v_created IS NOT NULL THEN
+            RETURN NEXT v_created;
+        END IF;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Remove monthly partitions that end before the start of the month
+-- p_keep_months months ago. With p_archive_schema set, partitions are
+-- detached and moved to that schema instead of dropped. Returns the names of
+-- the partitions removed.
+CREATE OR REPLACE FUNCTION app.apply_partition_retention(p_parent TEXT, p_keep_months INTEGER,
+                                                         p_archive_schema TEXT DEFAULT NULL)
+RETURNS SETOF TEXT AS $$
+DECLARE
+    v_cutoff DATE := (date_trunc('month', now() AT TIME ZONE 'UTC') - make_interval(months => p_keep_months))::date;
+    v_partition TEXT;
+BEGIN
+    IF p_keep_months IS NULL OR p_keep_months <= 0 THEN
+        RETURN;
+    END IF;
+
+    IF p_archive_schema IS NOT NULL THEN
+        EXECUTE format('CREATE SCHEMA IF NOT EXISTS %I', p_archive_schema);
+    END IF;
+
+    FOR v_partition IN
+        SELECT c.relname
+        FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = ('app.' || p_parent)::regclass
+          AND c.relname ~ ('^' || p_parent || '_p[0-9]{6}$')
+          AND to_date(right(c.relname, 6), 'YYYYMM') < v_cutoff
+        ORDER BY c.relname
+    LOOP
+        EXECUTE format('ALTER TABLE app.%I DETACH PARTITION app.%I', p_parent, v_partition);
+        IF p_archive_schema IS NOT NULL THEN
+            EXECUTE format('ALTER TABLE app.%I SET SCHEMA %I', v_partition, p_archive_schema);
+        ELSE
+            EXECUTE format('DROP TABLE app.%I', v_partition);
+        END IF;
+        RETURN NEXT v_partition;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- ============================================================================
+-- Convert app.connection_logs
+-- ============================================================================
+
+ALTER TABLE app.connection_logs RENAME TO connection_logs_unpartitioned;
+ALTER TABLE app.connection_logs_unpartitioned DROP CONSTRAINT connection_logs_pkey;
+DROP INDEX IF EXISTS app.idx_connection_logs_user_id;
+DROP INDEX IF EXISTS app.idx_connection_logs_device_id;
+DROP INDEX IF EXISTS app.idx_connection_logs_connection_start;
+DROP INDEX IF EXISTS app.idx_connection_logs_user_start_id;
+DROP INDEX IF EXISTS app.idx_connection_logs_device_start_id;
+ALTER SEQUENCE app.connection_logs_id_seq OWNED BY NONE;
+
+CREATE TABLE app.connection_logs (
+    id INTEGER NOT NULL DEFAULT nextval('app.connection_logs_id_seq'),
+    user_id INTEGER NOT NULL REFERENCES app.users(id),
+    device_id INTEGER NOT NULL REFERENCES app.devices(id),
+    connection_start TIMESTAMP WITH TIME ZONE NOT NULL,
+    connection_end TIMESTAMP WITH TIME ZONE,
+    duration INTEGER, -- in seconds
+    status connection_status NOT NULL,
+    ip_address INET,
+    user_agent TEXT,
+    -- The partition key has to be part of the primary key
+    PRIMARY KEY (id, connection_start)
+) PARTITION BY RANGE (connection_start);
+
+ALTER SEQUENCE app.connection_logs_id_seq OWNED BY app.connection_logs.id;
+
+CREATE TABLE app.connection_logs_default PARTITION OF app.connection_logs DEFAULT;
+
+CREATE INDEX idx_connection_logs_user_id ON app.connection_logs(user_id);
+CREATE INDEX idx_connection_logs_device_id ON app.connection_logs(device_id);
+CREATE INDEX idx_connection_logs_connection_start ON app.connection_logs(connection_start);
+CREATE INDEX idx_connection_logs_user_start_id ON app.connection_logs(user_id, connection_start DESC, id DESC);
+CREATE INDEX idx_connection_logs_device_start_id ON app.connection_logs(device_id, connection_start DESC, id DESC);
+
+COMMENT ON TABLE app.connection_logs IS 'Connection history and logs, partitioned by month of connection_start';
+
+-- ============================================================================
+-- Convert app.audit_logs
+-- ============================================================================
+
+ALTER TABLE app.audit_logs RENAME TO audit_logs_unpartitioned;
+ALTER TABLE app.audit_logs_unpartitioned DROP CONSTRAINT audit_logs_pkey;
+DROP INDEX IF EXISTS app.idx_audit_logs_user_id;
+DROP INDEX IF EXISTS app.idx_audit_logs_action;
+DROP INDEX IF EXISTS app.idx_audit_logs_resource_type;
+DROP INDEX IF EXISTS app.idx_audit_logs_timestamp;
+DROP INDEX IF EXISTS app.idx_audit_logs_timestamp_id;
+DROP INDEX IF EXISTS app.idx_audit_logs_user_timestamp_id;
+ALTER SEQUENCE app.audit_logs_id_seq OWNED BY NONE;
+
+CREATE TABLE app.audit_logs (
+    id INTEGER NOT NULL DEFAULT nextval('app.audit_logs_id_seq'),
+    user_id INTEGER REFERENCES app.users(id),
+    action audit_action NOT NULL,
+    resource_type VARCHAR(50) NOT NULL, -- user, device, connection, etc.
+    resource_id INTEGER,
+    details JSONB,
+    ip_address INET,
+    timestamp TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+ALTER SEQUENCE app.audit_logs_id_seq OWNED BY app.audit_logs.id;
+
+CREATE TABLE app.audit_logs_default PARTITION OF app.audit_logs DEFAULT;
+
+CREATE INDEX idx_audit_logs_user_id ON app.audit_logs(user_id);
+CREATE INDEX idx_audit_logs_action ON app.audit_logs(action);
+CREATE INDEX idx_audit_logs_resource_type ON app.audit_logs(resource_type);
+CREATE INDEX idx_audit_logs_timestamp_id ON app.audit_logs(timestamp DESC, id DESC);
+CREATE INDEX idx_audit_logs_user_timestamp_id ON app.audit_logs(user_id, timestamp DESC, id DESC);
+
+COMMENT ON TABLE app.audit_logs IS 'Audit trail for all system actions, partitioned by month of timestamp';
+
+-- ============================================================================
+-- Create partitions for existing data and the next few months, then copy rows
+-- ============================================================================
+
+DO $$
+DECLARE
+    v_month DATE;
+BEGIN
+    FOR v_month IN
+        SELECT DISTINCT date_trunc('month', connection_start AT TIME ZONE 'UTC')::date
+        FROM app.connection_logs_unpartitioned
+    LOOP
+        PERFORM app.create_monthly_partition('connection_logs', 'connection_start', v_month);
+    END LOOP;
+
+    FOR v_month IN
+        SELECT DISTINCT date_trunc('month', COALESCE(timestamp, now()) AT TIME ZONE 'UTC')::date
+        FROM app.audit_logs_unpartitioned
+    LOOP
+        PERFORM app.create_monthly_partition('audit_logs', 'timestamp', v_month);
+    END LOOP;
+
+    PERFORM app.ensure_monthly_partitions('connection_logs', 'connection_start', 3);
+    PERFORM app.ensure_monthly_partitions('audit_logs', 'timestamp', 3);
+END;
+$$;
+
+INSERT INTO app.connection_logs
+    (id, user_id, device_id, connection_start, connection_end, duration, status, ip_address, user_agent)
+SELECT id, user_id, device_id, connection_start, connection_end, duration, status, ip_address, user_agent
+FROM app.connection_logs_unpartitioned;
+
+INSERT INTO app.audit_logs
+    (id, user_id, action, resource_type, resource_id, details, ip_address, timestamp)
+SELECT id, user_id, action, resource_type, resource_id, details, ip_address, COALESCE(timestamp, now())
+FROM app.audit_logs_unpartitioned;
+
+DROP TABLE app.connection_logs_unpartitioned;
+DROP TABLE app.audit_logs_unpartitioned;
+
+ANALYZE app.connection_logs;
+ANALYZE app.audit_logs;
@@ -0,0 +1,8 @@
+-- Partial index over connections that have not ended yet, used to load the
+-- active session registry at startup without scanning every partition.
+
+SET search_path TO app, public;
+
+CREATE INDEX IF NOT EXISTS idx_connection_logs_open
+    ON app.connection_logs(id)
+    WHERE connection_end IS NULL AND status = 'success';
@@ -0,0 +1,19 @@
+-- Indexes for device search (DeviceRepository.searchDevices / findVisibleDevices).
+-- Substring matches on name, host and description use trigram GIN indexes,
+-- which serve ILIKE '%term%' at any position; tag filters use jsonb
+-- containment (tags @> '["a","b"]') on a jsonb_path_ops GIN index.
+
+SET search_path TO app, public;
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm WITH SCHEMA public;
+
+-- Listings only ever read active devices
+CREATE INDEX IF NOT EXISTS idx_devices_name_trgm
+    ON app.devices USING GIN (name public.gin_trgm_ops) WHERE is_active = TRUE;
+CREATE INDEX IF NOT EXISTS idx_devices_host_trgm
+    ON app.devices USING GIN (host public.gin_trgm_ops) WHERE is_active = TRUE;
+CREATE INDEX IF NOT EXISTS idx_devices_description_trgm
+    ON app.devices USING GIN (description public.gin_trgm_ops) WHERE is_active = TRUE;
+
+CREATE INDEX IF NOT EXISTS idx_devices_tags
+    ON app.devices USING GIN (tags jsonb_path_ops) WHERE is_active = TRUE;
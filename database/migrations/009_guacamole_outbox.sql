@@ -0,0 +1,20 @@
+-- Outbox of devices whose Guacamole connection needs to be brought in line with
+-- the device row (GuacamoleOutbox / GuacamoleOutboxDispatcher). Written in the
+-- same transaction as the device change; one row per device, so repeated edits
+-- collapse into a single pending sync.
+
+SET search_path TO app, public;
+
+CREATE TABLE IF NOT EXISTS app.guacamole_outbox (
+    device_id INTEGER PRIMARY KEY REFERENCES app.devices(id) ON DELETE CASCADE,
+    version INTEGER NOT NULL DEFAULT 1,          -- bumped by every change while pending
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    claimed_until TIMESTAMP,                     -- set while a dispatcher works on the row
+    last_error TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,  -- oldest change not yet applied
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_guacamole_outbox_due
+    ON app.guacamole_outbox(next_attempt_at);
@@ -0,0 +1,7 @@
+-- Look up devices by Guacamole connection ID: the reconciliation job re-checks
+-- orphaned connections against it before deleting them.
+
+SET search_path TO app, public;
+
+CREATE INDEX IF NOT EXISTS idx_devices_guacamole_conn_id
+    ON app.devices(guacamole_conn_id);
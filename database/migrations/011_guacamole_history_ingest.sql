@@ -0,0 +1,15 @@
+-- Progress of copying Guacamole's guacamole_connection_history into
+-- app.connection_logs (GuacamoleHistoryIngester). A single row: history is read
+-- by ascending history_id, and rows still open when read are remembered and
+-- checked again on every run until they close.
+
+SET search_path TO app, public;
+
+CREATE TABLE IF NOT EXISTS app.guacamole_history_ingest (
+    id SMALLINT PRIMARY KEY DEFAULT 1 CHECK (id = 1),
+    last_history_id INTEGER NOT NULL DEFAULT 0,        -- newest history row read
+    open_history_ids INTEGER[] NOT NULL DEFAULT '{}',  -- rows read before they ended
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+INSERT INTO app.guacamole_history_ingest (id) VALUES (1) ON CONFLICT DO NOTHING;
@@ -0,0 +1,36 @@
+-- Version of the device grant tables (user_devices, group_devices and
+-- group_members), bumped by a statement trigger on every write to them, including
+-- writes made outside the application. PermissionIndex and the device listing
+-- ETags compare it to the version they last loaded. A table row rather than a
+-- sequence, so the new version only becomes visible together with the change.
+
+SET search_path TO app, public;
+
+CREATE TABLE IF NOT EXISTS app.grant_version (
+    id SMALLINT PRIMARY KEY DEFAULT 1 CHECK (id = 1),
+    version BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO app.grant_version (id) VALUES (1) ON CONFLICT DO NOTHING;
+
+CREATE OR REPLACE FUNCTION app.bump_grant_version() RETURNS trigger AS $$
+BEGIN
+    UPDATE app.grant_version SET version = version + 1 WHERE id = 1;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_user_devices_grant_version ON app.user_devices;
+CREATE TRIGGER trg_user_devices_grant_version
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON app.user_devices
+    FOR EACH STATEMENT EXECUTE FUNCTION app.bump_grant_version();
+
+DROP TRIGGER IF EXISTS trg_group_devices_grant_version ON app.group_devices;
+CREATE TRIGGER trg_group_devices_grant_version
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON app.group_devices
+    FOR EACH STATEMENT EXECUTE FUNCTION app.bump_grant_version();
+
+DROP TRIGGER IF EXISTS trg_group_members_grant_version ON app.group_members;
+CREATE TRIGGER trg_group_members_grant_version
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON app.group_members
+    FOR EACH STATEMENT EXECUTE FUNCTION app.bump_grant_version();
@@ -0,0 +1,16 @@
+-- Last heartbeat of each open connection, kept in the database so a heartbeat
+-- can reach any instance and the session reaper on any instance sees it.
+-- Connections that never sent one count from their start.
+
+SET search_path TO app, public;
+
+ALTER TABLE app.connection_logs ADD COLUMN IF NOT EXISTS last_heartbeat TIMESTAMP WITH TIME ZONE;
+
+-- Connections open at upgrade time get a full heartbeat timeout from now to report in
+UPDATE app.connection_logs SET last_heartbeat = now()
+    WHERE connection_end IS NULL AND status = 'success' AND last_heartbeat IS NULL;
+
+-- Lets the reaper find expired connections without scanning every partition
+CREATE INDEX IF NOT EXISTS idx_connection_logs_open_heartbeat
+    ON app.connection_logs ((COALESCE(last_heartbeat, connection_start)))
+    WHERE connection_end IS NULL AND status = 'success';
@@ -9,6 +9,7 @@ export const useApi = () => {
             method?: string;
             body?: any;
             headers?: Record<string, string>;
+            params?: Record<string, any>;
             requireAuth?: boolean;
         } = {}
     ): Promise<T> => {
@@ -16,6 +17,7 @@ export const useApi = () => {
             method = "GET",
             body,
             headers = {},
+            params,
             requireAuth = true,
         } = options;
 
@@ -39,7 +41,7 @@ export const useApi = () => {
         }
 
         try {
-            const fullUrl = `${apiUrl}${endpoint}`;
+            const fullUrl = `${apiUrl}${endpoint}${toQueryString(params)}`;
 
             const response = await fetch(fullUrl, {
                 method,
@@ -122,6 +124,23 @@ export const useApi = () => {
     };
 };
 
+/**
+ * Build a query string, skipping empty values and repeating the key for arrays
+ */
+const toQueryString = (params?: Record<string, any>): string => {
+    if (!params) return "";
+
+    const query = new URLSearchParams();
+    for (const [key, value] of Object.entries(params)) {
+        if (value === undefined || value === null || value === "") continue;
+        const values = Array.isArray(value) ? value : [value];
+        values.forEach((v) => query.append(key, String(v)));
+    }
+
+    const result = query.toString();
+    return result ? `?${result}` : "";
+};
+
 export class ApiError extends Error {
     constructor(message: string, public status: number, public data?: any) {
         super(message);
@@ -8,6 +8,15 @@ export interface ConnectionInitiateResponse {
     protocol: string;
 }
 
+// Returned with 202 instead of a connection when a session limit is reached
+export interface WaitlistTicket {
+    ticketId: string;
+    deviceId: number;
+    status: "waiting" | "granted";
+    position: number;
+    reason: string;
+}
+
 export interface ConnectionLog {
     id: number;
     userId: number;
@@ -32,15 +41,21 @@ export const useConnection = () => {
     const api = useApi();
 
     /**
-     * Initiate a connection to a device
+     * Initiate a connection to a device. Over a session limit with the
+     * waitlist enabled this resolves to a waitlist ticket; pass the ticket
+     * back once it is granted.
      */
     const initiateConnection = async (
-        deviceId: number
-    ): Promise<ConnectionInitiateResponse> => {
+        deviceId: number,
+        ticketId?: string
+    ): Promise<ConnectionInitiateResponse | WaitlistTicket> => {
         try {
-            const response = await api.post<ConnectionInitiateResponse>(
-                `/connections/${deviceId}/initiate`
-            );
+            const query = ticketId
+                ? `?ticket=${encodeURIComponent(ticketId)}`
+                : "";
+            const response = await api.post<
+                ConnectionInitiateResponse | WaitlistTicket
+            >(`/connections/${deviceId}/initiate${query}`);
             return response;
         } catch (error: any) {
             console.error("Failed to initiate connection:", error);
@@ -65,6 +80,31 @@ export const useConnection = () => {
         }
     };
 
+    /**
+     * Get the state of a waitlist ticket. Polling keeps the ticket alive.
+     */
+    const getWaitlistTicket = async (
+        ticketId: string
+    ): Promise<WaitlistTicket> => {
+        return await api.get<WaitlistTicket>(
+            `/connections/waitlist/${ticketId}`
+        );
+    };
+
+    /**
+     * Leave the waitlist
+     */
+    const cancelWaitlistTicket = async (ticketId: string): Promise<void> => {
+        await api.delete(`/connections/waitlist/${ticketId}`);
+    };
+
+    /**
+     * Keep an open connection alive. Fails with 404 once the server has ended it.
+     */
+    const sendHeartbeat = async (connectionLogId: number): Promise<void> => {
+        await api.post(`/connections/${connectionLogId}/heartbeat`);
+    };
+
     /**
      * Get connection logs for the current user
      */
@@ -137,6 +177,9 @@ export const useConnection = () => {
     return {
         initiateConnection,
         endConnection,
+        sendHeartbeat,
+        getWaitlistTicket,
+        cancelWaitlistTicket,
         getConnectionLogs,
         getDeviceConnectionLogs,
     };
@@ -9,6 +9,12 @@ export interface DeviceListResponse {
     size: number;
 }
 
+export interface DeviceSearch {
+    q?: string;
+    host?: string;
+    tags?: string[];
+}
+
 export const useDevice = () => {
     const api = useApi();
 
@@ -20,7 +26,8 @@ export const useDevice = () => {
         size: number = 20,
         name?: string,
         protocol?: "rdp" | "vnc" | "ssh",
-        status?: "online" | "offline" | "unknown"
+        status?: "online" | "offline" | "unknown",
+        search: DeviceSearch = {}
     ): Promise<DeviceListResponse> => {
         try {
             const params: Record<string, any> = {
@@ -31,6 +38,9 @@ export const useDevice = () => {
             if (name) params.name = name;
             if (protocol) params.protocol = protocol;
             if (status) params.status = status;
+            if (search.q) params.q = search.q;
+            if (search.host) params.host = search.host;
+            if (search.tags && search.tags.length > 0) params.tags = search.tags;
 
             const response = await api.get<DeviceListResponse>("/devices", {
                 params,
@@ -0,0 +1,146 @@
+export type LiveEventType =
+    | "ready"
+    | "resync"
+    | "device.created"
+    | "device.updated"
+    | "device.deleted"
+    | "device.status"
+    | "connection.started"
+    | "connection.ended";
+
+export interface LiveEvent {
+    type: LiveEventType;
+    data: any;
+    receivedAt: Date;
+}
+
+type LiveEventHandler = (event: LiveEvent) => void;
+
+/**
+ * Subscribe to the server-sent event stream at /api/events/stream.
+ *
+ * EventSource cannot send an Authorization header, so the stream is read with
+ * fetch instead. The connection is re-opened with backoff when it drops, and
+ * closed automatically when the calling component unmounts.
+ */
+export const useLiveEvents = () => {
+    const config = useRuntimeConfig();
+    const apiUrl = config.public.apiUrl || "/api";
+
+    const connected = ref(false);
+    const handlers = new Map<string, Set<LiveEventHandler>>();
+    let controller: AbortController | null = null;
+    let retryDelay = 1000;
+    let retryTimer: ReturnType<typeof setTimeout> | null = null;
+
+    const on = (type: LiveEventType | "*", handler: LiveEventHandler) => {
+        if (!handlers.has(type)) handlers.set(type, new Set());
+        handlers.get(type)!.add(handler);
+        return () => handlers.get(type)?.delete(handler);
+    };
+
+    const dispatch = (type: string, data: string) => {
+        let parsed: any = null;
+        try {
+            parsed = data ? JSON.parse(data) : null;
+        } catch (e) {
+            parsed = data;
+        }
+        const event: LiveEvent = {
+            type: type as LiveEventType,
+            data: parsed,
+            receivedAt: new Date(),
+        };
+        handlers.get(type)?.forEach((handler) => handler(event));
+        handlers.get("*")?.forEach((handler) => handler(event));
+    };
+
+    // Parse one SSE frame: "event:" and "data:" lines, comments start with ":"
+    const parseFrame = (frame: string) => {
+        let type = "message";
+        const data: string[] = [];
+        for (const line of frame.split("\n")) {
+            if (line.startsWith("event:")) {
+                type = line.slice(6).trim();
+            } else if (line.startsWith("data:")) {
+                data.push(line.slice(5).replace(/^ /, ""));
+            }
+        }
+        if (data.length > 0) {
+            dispatch(type, data.join("\n"));
+        }
+    };
+
+    const connect = async () => {
+        if (!process.client || controller) return;
+
+        const authStore = useAuthStore();
+        if (!authStore.token) return;
+
+        controller = new AbortController();
+        try {
+            const response = await fetch(`${apiUrl}/events/stream`, {
+                headers: {
+                    Accept: "text/event-stream",
+                    Authorization: `Bearer ${authStore.token}`,
+                },
+                signal: controller.signal,
+            });
+            if (!response.ok || !response.body) {
+                throw new Error(`Event stream failed: ${response.status}`);
+            }
+
+            connected.value = true;
+            retryDelay = 1000;
+
+            const reader = response.body
+                .pipeThrough(new TextDecoderStream())
+                .getReader();
+            let buffer = "";
+            while (true) {
+                const { value, done } = await reader.read();
+                if (done) break;
+                buffer += value.replace(/\r\n?/g, "\n");
+                let boundary = buffer.indexOf("\n\n");
+                while (boundary >= 0) {
+                    parseFrame(buffer.slice(0, boundary));
+                    buffer = buffer.slice(boundary + 2);
+                    boundary = buffer.indexOf("\n\n");
+                }
+            }
+        } catch (error: any) {
+            if (error?.name === "AbortError") return;
+            console.error("Live event stream error:", error);
+        } finally {
+            connected.value = false;
+        }
+
+        // Stream ended or failed; reconnect unless close() was called meanwhile
+        if (controller && !controller.signal.aborted) {
+            controller = null;
+            retryTimer = setTimeout(connect, retryDelay);
+            retryDelay = Math.min(retryDelay * 2, 30000);
+        }
+    };
+
+    const close = () => {
+        if (retryTimer) {
+            clearTimeout(retryTimer);
+            retryTimer = null;
+        }
+        controller?.abort();
+        controller = null;
+        connected.value = false;
+    };
+
+    if (getCurrentInstance()) {
+        onBeforeUnmount(close);
+    }
+
+    return {
+        connected,
+        connect,
+        close,
+        on,
+    };
+};
@@ -0,0 +1,50 @@
+package com.rdm.benchmarks;
+
+import com.rdm.dto.ConnectionLogDTO;
+import com.rdm.dto.DeviceDTO;
+import com.rdm.model.ConnectionLog;
+import com.rdm.model.Device;
+import com.rdm.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping done for every row of a device or connection listing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DtoMappingBenchmark {
+
+    private Device device;
+    private ConnectionLog connectionLog;
+
+    @Setup
+    public void setUp() {
+        device = Fixtures.device(7, Device.Protocol.rdp);
+        connectionLog = Fixtures.connectionLog(1, Fixtures.user(2, User.Role.operator), device);
+    }
+
+    @Benchmark
+    public DeviceDTO deviceFromDevice() {
+        return DeviceDTO.fromDevice(device);
+    }
+
+    @Benchmark
+    public ConnectionLogDTO connectionLogFromConnectionLog() {
+        return ConnectionLogDTO.fromConnectionLog(connectionLog);
+    }
+}
@@ -0,0 +1,51 @@
+package com.rdm.benchmarks;
+
+import com.rdm.model.Device;
+import com.rdm.service.DevicePasswordCodec;
+import com.rdm.service.GuacamoleService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link GuacamoleService#buildConnectionParameters}, run once per device on
+ * every provisioning diff.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GuacamoleParametersBenchmark {
+
+    @Param({"rdp", "vnc", "ssh"})
+    public Device.Protocol protocol;
+
+    private GuacamoleService guacamoleService;
+    private Device device;
+
+    @Setup
+    public void setUp() {
+        // Building parameters touches neither the JdbcTemplate nor the DataSource
+        guacamoleService = new GuacamoleService(null, new DevicePasswordCodec(), new SimpleMeterRegistry());
+        device = Fixtures.device(1, protocol);
+    }
+
+    @Benchmark
+    public Map<String, String> buildConnectionParameters() {
+        return guacamoleService.buildConnectionParameters(device);
+    }
+}
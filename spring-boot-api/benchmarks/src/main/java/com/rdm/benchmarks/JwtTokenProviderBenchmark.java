@@ -0,0 +1,71 @@
+package com.rdm.benchmarks;
+
+import com.rdm.security.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token generation and verification as done on login and by the JWT filter on
+ * every request, with and without the verified-token cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenProviderBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-with-at-least-256-bits-of-entropy";
+
+    private JwtTokenProvider cachedProvider;
+    private JwtTokenProvider uncachedProvider;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        cachedProvider = provider(10_000);
+        uncachedProvider = provider(0);
+        token = cachedProvider.generateToken("benchmark-user");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return cachedProvider.generateToken("benchmark-user");
+    }
+
+    @Benchmark
+    public Claims verifyCached() {
+        return cachedProvider.getVerifiedClaims(token);
+    }
+
+    @Benchmark
+    public Claims verifyUncached() {
+        return uncachedProvider.getVerifiedClaims(token);
+    }
+
+    @Benchmark
+    public String parseUsername() {
+        return uncachedProvider.getUsernameFromToken(token);
+    }
+
+    private static JwtTokenProvider provider(int cacheSize) {
+        JwtTokenProvider provider = new JwtTokenProvider();
+        Fixtures.setField(provider, "jwtSecret", SECRET);
+        Fixtures.setField(provider, "jwtExpirationMs", 604_800_000L);
+        Fixtures.setField(provider, "verifiedTokenCacheSize", cacheSize);
+        Fixtures.invoke(provider, "init");
+        return provider;
+    }
+}
@@ -0,0 +1,148 @@
+package com.rdm.benchmarks;
+
+import com.rdm.model.User;
+import com.rdm.model.UserDevice;
+import com.rdm.security.UserPrincipal;
+import com.rdm.service.PermissionIndex;
+import com.rdm.service.PermissionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PermissionService#hasDeviceAccess} for a non-admin user, against an
+ * index populated with direct grants, group grants and group memberships.
+ *
+ * {@code warmLookup} hits the user's precomputed permission table;
+ * {@code lookupAfterGrantChange} moves the grant version first, so it includes
+ * reloading the index and rebuilding the table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PermissionServiceBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final int DEVICES = 5_000;
+    private static final int GROUPS = 50;
+    private static final int GROUPS_PER_USER = 3;
+    private static final int LOOKUPS = 1 << 12;
+
+    @Param({"10", "100", "1000"})
+    public int directGrantsPerUser;
+
+    @Param({"100"})
+    public int grantsPerGroup;
+
+    private PermissionService permissionService;
+    private PermissionService reloadingService;
+    private long grantVersion;
+    private int userId;
+    private int[] deviceIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        String[] permissions = {"view", "read", "write", "control"};
+        List<Object[]> userDevices = new ArrayList<>();
+        List<Object[]> groupMembers = new ArrayList<>();
+        List<Object[]> groupDevices = new ArrayList<>();
+        for (int user = 1; user <= USERS; user++) {
+            for (int i = 0; i < directGrantsPerUser; i++) {
+                userDevices.add(new Object[] {user, 1 + random.nextInt(DEVICES),
+                        permissions[random.nextInt(permissions.length)]});
+            }
+            for (int i = 0; i < GROUPS_PER_USER; i++) {
+                groupMembers.add(new Object[] {1 + random.nextInt(GROUPS), user});
+            }
+        }
+        for (int group = 1; group <= GROUPS; group++) {
+            for (int i = 0; i < grantsPerGroup; i++) {
+                groupDevices.add(new Object[] {group, 1 + random.nextInt(DEVICES),
+                        permissions[random.nextInt(permissions.length)]});
+            }
+        }
+
+        // Serves the generated rows and the grant version in place of the database
+        JdbcTemplate grantTables = new JdbcTemplate() {
+            @Override
+            public void query(String sql, RowCallbackHandler rch) {
+                List<Object[]> rows = sql.contains("user_devices") ? userDevices
+                        : sql.contains("group_devices") ? groupDevices : groupMembers;
+                Object[][] current = new Object[1][];
+                ResultSet rs = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                        new Class<?>[] {ResultSet.class}, (proxy, method, args) -> {
+                            Object value = current[0][(Integer) args[0] - 1];
+                            return method.getName().equals("getString") ? String.valueOf(value) : value;
+                        });
+                try {
+                    for (Object[] row : rows) {
+                        current[0] = row;
+                        rch.processRow(rs);
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public <T> T queryForObject(String sql, Class<T> requiredType) {
+                return requiredType.cast(grantVersion);
+            }
+        };
+        permissionService = new PermissionService(
+                new PermissionIndex(grantTables, Duration.ofSeconds(1)), new SimpleMeterRegistry());
+        reloadingService = new PermissionService(
+                new PermissionIndex(grantTables, Duration.ZERO), new SimpleMeterRegistry());
+
+        userId = 1 + random.nextInt(USERS);
+        deviceIds = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            deviceIds[i] = 1 + random.nextInt(DEVICES);
+        }
+
+        UserPrincipal principal = UserPrincipal.create(Fixtures.user(userId, User.Role.operator));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @Benchmark
+    public boolean warmLookup() {
+        int deviceId = deviceIds[next++ & (LOOKUPS - 1)];
+        return permissionService.hasDeviceAccess(userId, deviceId, UserDevice.PermissionType.view);
+    }
+
+    @Benchmark
+    public boolean lookupAfterGrantChange() {
+        int deviceId = deviceIds[next++ & (LOOKUPS - 1)];
+        grantVersion++;
+        return reloadingService.hasDeviceAccess(userId, deviceId, UserDevice.PermissionType.control);
+    }
+}
@@ -0,0 +1,62 @@
+// k6 load test for the RDM Platform API: a read-heavy mix of device and
+// connection log listings plus connect/disconnect cycles.
+//
+//   k6 run -e BASE_URL=http://localhost:8080 -e USERNAME=admin -e PASSWORD=... \
+//          -e DEVICE_ID=1 spring-boot-api/loadtest/api-mix.js
+//
+// VUS and DURATION override the default of 200 virtual users for 5 minutes.
+import http from "k6/http";
+import { check, sleep } from "k6";
+
+const BASE_URL = __ENV.BASE_URL || "http://localhost:8080";
+const DEVICE_ID = __ENV.DEVICE_ID || "1";
+
+export const options = {
+    scenarios: {
+        api: {
+            executor: "ramping-vus",
+            startVUs: 0,
+            stages: [
+                { duration: "30s", target: Number(__ENV.VUS || 200) },
+                { duration: __ENV.DURATION || "5m", target: Number(__ENV.VUS || 200) },
+                { duration: "15s", target: 0 },
+            ],
+        },
+    },
+    summaryTrendStats: ["avg", "p(50)", "p(95)", "p(99)", "max"],
+    thresholds: {
+        http_req_failed: ["rate<0.01"],
+    },
+};
+
+export function setup() {
+    const res = http.post(
+        `${BASE_URL}/api/auth/login`,
+        JSON.stringify({ username: __ENV.USERNAME || "admin", password: __ENV.PASSWORD }),
+        { headers: { "Content-Type": "application/json" } },
+    );
+    check(res, { "logged in": (r) => r.status === 200 });
+    return { token: res.json("token") };
+}
+
+export default function (data) {
+    const params = { headers: { Authorization: `Bearer ${data.token}` } };
+    const roll = Math.random();
+
+    if (roll < 0.5) {
+        const res = http.get(`${BASE_URL}/api/devices?page=0&size=20`, Object.assign({ tags: { name: "devices" } }, params));
+        check(res, { "devices 200": (r) => r.status === 200 });
+    } else if (roll < 0.8) {
+        const res = http.get(`${BASE_URL}/api/connections/cursor?size=50`, Object.assign({ tags: { name: "logs" } }, params));
+        check(res, { "logs 200": (r) => r.status === 200 });
+    } else {
+        const start = http.post(`${BASE_URL}/api/connections/${DEVICE_ID}/initiate`, null,
+            Object.assign({ tags: { name: "initiate" } }, params));
+        if (check(start, { "initiate 201": (r) => r.status === 201 })) {
+            http.post(`${BASE_URL}/api/connections/${start.json("connectionLogId")}/end`, null,
+                Object.assign({ tags: { name: "end" } }, params));
+        }
+    }
+
+    sleep(Math.random() * 0.2);
+}
@@ -0,0 +1,45 @@
+package com.rdm.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Per-request Hibernate statement counting, see {@link StatementCountFilter}.
+ * Off by default; it adds a filter and a statement inspector to every request,
+ * so turn it on to hunt down N+1 patterns in a running instance. The listing
+ * endpoints' statement budgets are checked by the test suite instead.
+ */
+@Configuration
+@ConditionalOnProperty(name = "rdm.jpa.statement-counting.enabled", havingValue = "true")
+public class StatementCountConfig {
+
+    @Bean
+    public StatementCountFilter statementCountFilter(
+            MeterRegistry meterRegistry,
+            @Value("${rdm.jpa.statements-warn-threshold:20}") int warnThreshold) {
+        return new StatementCountFilter(meterRegistry, warnThreshold);
+    }
+
+    /**
+     * Ahead of the security filters, so principal lookups are counted too.
+     */
+    @Bean
+    public FilterRegistrationBean<StatementCountFilter> statementCountFilterRegistration(
+            StatementCountFilter statementCountFilter) {
+        FilterRegistrationBean<StatementCountFilter> registration = new FilterRegistrationBean<>(statementCountFilter);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return registration;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer statementCountInspector(StatementCountFilter statementCountFilter) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, statementCountFilter);
+    }
+}
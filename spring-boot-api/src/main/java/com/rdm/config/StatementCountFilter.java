@@ -0,0 +1,78 @@
+package com.rdm.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Counts the SQL statements Hibernate prepares while serving each request, to
+ * catch N+1 query patterns. Registered both as a servlet filter, which opens and
+ * closes the count, and as Hibernate's statement inspector, which increments it.
+ * Statements run through JdbcTemplate are not seen here.
+ *
+ * Counts go to rdm.requests.statements by route; requests above the warning
+ * threshold are also logged.
+ */
+public class StatementCountFilter extends OncePerRequestFilter implements StatementInspector {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementCountFilter.class);
+
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final int warnThreshold;
+
+    public StatementCountFilter(MeterRegistry meterRegistry, int warnThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.warnThreshold = warnThreshold;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        int[] count = new int[1];
+        COUNT.set(count);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            COUNT.remove();
+            record(request, count[0]);
+        }
+    }
+
+    private void record(HttpServletRequest request, int statements) {
+        // Unmatched requests (404s, static resources) are left out to keep the route tag bounded
+        Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (route == null) {
+            return;
+        }
+        DistributionSummary.builder("rdm.requests.statements")
+                .description("Hibernate statements prepared per request")
+                .tag("method", request.getMethod())
+                .tag("uri", route.toString())
+                .register(meterRegistry)
+                .record(statements);
+        if (warnThreshold > 0 && statements > warnThreshold) {
+            logger.warn("{} {} ran {} Hibernate statements", request.getMethod(), request.getRequestURI(), statements);
+        }
+    }
+}
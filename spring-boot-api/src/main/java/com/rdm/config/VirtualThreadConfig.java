@@ -0,0 +1,47 @@
+package com.rdm.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+/**
+ * Settings that only apply when requests run on virtual threads
+ * (spring.threads.virtual.enabled on Java 21+).
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    /**
+     * Limit concurrent requests to the database pool size unless
+     * rdm.concurrency.max-requests says otherwise. Runs after the observation
+     * filter so time spent waiting shows up in http.server.requests.
+     */
+    @Bean
+    public FilterRegistrationBean<RequestConcurrencyFilter> requestConcurrencyFilter(
+            @Value("${rdm.concurrency.max-requests:0}") int maxRequests,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${rdm.concurrency.acquire-timeout:PT10S}") Duration acquireTimeout,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
+        int permits = maxRequests > 0 ? maxRequests : poolSize;
+        logger.info("Virtual threads enabled, serving at most {} requests at once", permits);
+
+        FilterRegistrationBean<RequestConcurrencyFilter> registration = new FilterRegistrationBean<>(
+                new RequestConcurrencyFilter(permits, acquireTimeout, objectMapper, meterRegistry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
@@ -0,0 +1,33 @@
+package com.rdm.config;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread factories for threads the application starts itself. They create
+ * virtual threads when spring.threads.virtual.enabled is set and the JVM
+ * supports them (Java 21+), the same condition Spring Boot applies to Tomcat
+ * and the task executor and scheduler; daemon platform threads otherwise.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isEnabled(Environment environment) {
+        return Threading.VIRTUAL.isActive(environment);
+    }
+
+    public static ThreadFactory threadFactory(Environment environment, String namePrefix) {
+        if (isEnabled(environment)) {
+            return new VirtualThreadTaskExecutor(namePrefix).getVirtualThreadFactory();
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(namePrefix);
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+}
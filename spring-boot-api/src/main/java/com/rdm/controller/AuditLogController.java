@@ -0,0 +1,68 @@
+package com.rdm.controller;
+
+import com.rdm.dto.AuditLogDTO;
+import com.rdm.dto.CursorPage;
+import com.rdm.model.AuditLog;
+import com.rdm.service.AuditService;
+import com.rdm.service.ExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/audit-logs")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class AuditLogController {
+
+    private final AuditService auditService;
+    private final ExportService exportService;
+
+    public AuditLogController(AuditService auditService, ExportService exportService) {
+        this.auditService = auditService;
+        this.exportService = exportService;
+    }
+
+    /**
+     * Search audit logs with keyset pagination
+     * GET /api/audit-logs?userId=&action=&resourceType=&from=&to=&cursor=&size=50
+     */
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CursorPage<AuditLogDTO>> searchAuditLogs(
+            @RequestParam(required = false) Integer userId,
+            @RequestParam(required = false) AuditLog.AuditAction action,
+            @RequestParam(required = false) String resourceType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(auditService.searchAuditLogs(userId, action, resourceType, from, to, cursor, size));
+    }
+
+    /**
+     * Stream audit logs as CSV or NDJSON, oldest first
+     * GET /api/audit-logs/export?format=ndjson&gzip=true&userId=&action=&resourceType=&from=&to=
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public void exportAuditLogs(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) Integer userId,
+            @RequestParam(required = false) AuditLog.AuditAction action,
+            @RequestParam(required = false) String resourceType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            HttpServletResponse response) throws IOException {
+        ExportService.Format exportFormat = ExportService.parseFormat(format);
+        try (OutputStream out = ExportResponses.open(response, "audit-logs", exportFormat, gzip)) {
+            exportService.exportAuditLogs(userId, action, resourceType, from, to, exportFormat, out);
+        }
+    }
+}
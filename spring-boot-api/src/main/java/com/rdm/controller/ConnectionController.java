@@ -1,45 +1,62 @@
 package com.rdm.controller;
 
+import com.rdm.dto.ActiveSessionDTO;
 import com.rdm.dto.ConnectionInitiateResponse;
 import com.rdm.dto.ConnectionLogDTO;
+import com.rdm.dto.CursorPage;
+import com.rdm.dto.WaitlistTicketDTO;
 import com.rdm.model.ConnectionLog;
 import com.rdm.service.ConnectionService;
+import com.rdm.service.ExportService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/connections")
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class ConnectionController {
 
     private final ConnectionService connectionService;
+    private final ExportService exportService;
 
-    public ConnectionController(ConnectionService connectionService) {
+    public ConnectionController(ConnectionService connectionService, ExportService exportService) {
         this.connectionService = connectionService;
+        this.exportService = exportService;
     }
 
     /**
      * Initiate a connection to a device
-     * POST /api/connections/{deviceId}/initiate
+     * POST /api/connections/{deviceId}/initiate?ticket=
+     *
+     * Over a session limit this answers 429, or 202 with a waitlist ticket when
+     * the waitlist is enabled; retry with ?ticket= once the ticket is granted.
      */
     @PostMapping("/{deviceId}/initiate")
     @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR', 'VIEWER')")
     public ResponseEntity<ConnectionInitiateResponse> initiateConnection(
             @PathVariable Integer deviceId,
+            @RequestParam(required = false) String ticket,
             HttpServletRequest request) {
         String ipAddress = getClientIpAddress(request);
         String userAgent = request.getHeader("User-Agent");
 
         ConnectionInitiateResponse response = connectionService.initiateConnection(
-                deviceId, ipAddress, userAgent);
+                deviceId, ticket, ipAddress, userAgent);
 
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
@@ -61,6 +78,48 @@ public class ConnectionController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Keep an open connection alive; 404 once it has been ended or reaped
+     * POST /api/connections/{connectionLogId}/heartbeat
+     */
+    @PostMapping("/{connectionLogId}/heartbeat")
+    @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR', 'VIEWER')")
+    public ResponseEntity<Void> heartbeat(@PathVariable Integer connectionLogId) {
+        connectionService.heartbeat(connectionLogId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Get the state of a waitlist ticket
+     * GET /api/connections/waitlist/{ticketId}
+     */
+    @GetMapping("/waitlist/{ticketId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR', 'VIEWER')")
+    public ResponseEntity<WaitlistTicketDTO> getWaitlistTicket(@PathVariable String ticketId) {
+        return ResponseEntity.ok(connectionService.getWaitlistTicket(ticketId));
+    }
+
+    /**
+     * Leave the waitlist
+     * DELETE /api/connections/waitlist/{ticketId}
+     */
+    @DeleteMapping("/waitlist/{ticketId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR', 'VIEWER')")
+    public ResponseEntity<Void> cancelWaitlistTicket(@PathVariable String ticketId) {
+        connectionService.cancelWaitlistTicket(ticketId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Get open connections (all for admins, otherwise the current user's)
+     * GET /api/connections/active
+     */
+    @GetMapping("/active")
+    @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR', 'VIEWER')")
+    public ResponseEntity<List<ActiveSessionDTO>> getActiveSessions() {
+        return ResponseEntity.ok(connectionService.getActiveSessions());
+    }
+
     /**
      * Get connection logs for the current user
      * GET /api/connections
@@ -86,6 +145,52 @@ public class ConnectionController {
         return ResponseEntity.ok(logs);
     }
 
+    /**
+     * Get connection logs for the current user with keyset pagination
+     * GET /api/connections/cursor?cursor=...&size=20
+     */
+    @GetMapping("/cursor")
+    @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR', 'VIEWER')")
+    public ResponseEntity<CursorPage<ConnectionLogDTO>> getConnectionLogsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(connectionService.getConnectionLogs(cursor, size));
+    }
+
+    /**
+     * Get connection logs for a specific device with keyset pagination
+     * GET /api/connections/device/{deviceId}/logs/cursor?cursor=...&size=20
+     */
+    @GetMapping("/device/{deviceId}/logs/cursor")
+    @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR', 'VIEWER')")
+    public ResponseEntity<CursorPage<ConnectionLogDTO>> getDeviceConnectionLogsByCursor(
+            @PathVariable Integer deviceId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(connectionService.getDeviceConnectionLogs(deviceId, cursor, size));
+    }
+
+    /**
+     * Stream connection logs as CSV or NDJSON, oldest first. Admins can export
+     * every user's connections; others only get their own.
+     * GET /api/connections/export?format=csv&gzip=false&userId=&deviceId=&from=&to=
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR', 'VIEWER')")
+    public void exportConnectionLogs(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) Integer userId,
+            @RequestParam(required = false) Integer deviceId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            HttpServletResponse response) throws IOException {
+        ExportService.Format exportFormat = ExportService.parseFormat(format);
+        try (OutputStream out = ExportResponses.open(response, "connections", exportFormat, gzip)) {
+            exportService.exportConnectionLogs(userId, deviceId, from, to, exportFormat, out);
+        }
+    }
+
     private String getClientIpAddress(HttpServletRequest request) {
         String xForwardedFor = request.getHeader("X-Forwarded-For");
         if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
@@ -2,18 +2,33 @@ package com.rdm.controller;
 
 import com.rdm.dto.CreateDeviceDTO;
 import com.rdm.dto.DeviceDTO;
+import com.rdm.dto.DeviceImportResultDTO;
+import com.rdm.dto.ProvisionDevicesRequest;
+import com.rdm.dto.ProvisionResultDTO;
 import com.rdm.dto.UpdateDeviceDTO;
 import com.rdm.model.Device;
+import com.rdm.security.UserPrincipal;
+import com.rdm.service.DeviceImportService;
 import com.rdm.service.DeviceService;
+import com.rdm.service.ExportService;
+import com.rdm.service.ListingVersions;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/devices")
@@ -21,19 +36,43 @@ import org.springframework.web.bind.annotation.*;
 public class DeviceController {
     
     private final DeviceService deviceService;
+    private final DeviceImportService deviceImportService;
+    private final ExportService exportService;
+    private final ListingVersions listingVersions;
+    
+    // Browsers keep the listing but revalidate it with If-None-Match on every use
+    private static final CacheControl LISTING_CACHE = CacheControl.noCache().cachePrivate();
     
-    public DeviceController(DeviceService deviceService) {
+    public DeviceController(DeviceService deviceService, DeviceImportService deviceImportService,
+            ExportService exportService, ListingVersions listingVersions) {
         this.deviceService = deviceService;
+        this.deviceImportService = deviceImportService;
+        this.exportService = exportService;
+        this.listingVersions = listingVersions;
     }
     
+    /**
+     * List devices. Responses carry an ETag from the device and grant change
+     * counters; a matching If-None-Match is answered with 304 before any query runs.
+     */
     @GetMapping
     public ResponseEntity<Page<DeviceDTO>> getAllDevices(
+            @AuthenticationPrincipal UserPrincipal principal,
+            ServletWebRequest webRequest,
             @PageableDefault(size = 20) Pageable pageable,
             @RequestParam(required = false) String name,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String host,
             @RequestParam(required = false) Device.Protocol protocol,
-            @RequestParam(required = false) Device.DeviceStatus status) {
-        Page<DeviceDTO> devices = deviceService.getAllDevices(pageable, name, protocol, status);
-        return ResponseEntity.ok(devices);
+            @RequestParam(required = false) Device.DeviceStatus status,
+            @RequestParam(required = false) List<String> tags) {
+        String etag = listingVersions.deviceListTag(principal.getId(), principal.getRole().name(),
+                webRequest.getRequest().getQueryString());
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(LISTING_CACHE).build();
+        }
+        Page<DeviceDTO> devices = deviceService.getAllDevices(pageable, name, q, host, protocol, status, tags);
+        return ResponseEntity.ok().eTag(etag).cacheControl(LISTING_CACHE).body(devices);
     }
     
     @GetMapping("/{id}")
@@ -73,6 +112,55 @@ public class DeviceController {
         return ResponseEntity.noContent().build();
     }
     
+    /**
+     * Create or update Guacamole connections for many devices at once
+     * POST /api/devices/provision
+     */
+    @PostMapping("/provision")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ProvisionResultDTO> provisionDevices(
+            @RequestBody(required = false) ProvisionDevicesRequest provisionRequest,
+            HttpServletRequest request) {
+        String ipAddress = getClientIpAddress(request);
+        ProvisionResultDTO result = deviceService.provisionDevices(
+                provisionRequest != null ? provisionRequest.getDeviceIds() : null, ipAddress);
+        return ResponseEntity.ok(result);
+    }
+    
+    /**
+     * Create devices from a CSV file or JSON array in the request body, streamed
+     * and written in batches. Answers with a result for every row.
+     * POST /api/devices/import?format=csv|json (default from Content-Type)
+     */
+    @PostMapping("/import")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<DeviceImportResultDTO> importDevices(
+            @RequestParam(required = false) String format,
+            HttpServletRequest request) throws IOException {
+        DeviceImportService.Format importFormat = DeviceImportService.parseFormat(format, request.getContentType());
+        DeviceImportResultDTO result = deviceImportService.importDevices(
+                request.getInputStream(), importFormat, getClientIpAddress(request));
+        return ResponseEntity.ok(result);
+    }
+    
+    /**
+     * Stream active devices as CSV or NDJSON, in the column layout the import reads.
+     * Non-admins only get devices they can view.
+     * GET /api/devices/export?format=csv&gzip=false&protocol=
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR', 'VIEWER')")
+    public void exportDevices(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) Device.Protocol protocol,
+            HttpServletResponse response) throws IOException {
+        ExportService.Format exportFormat = ExportService.parseFormat(format);
+        try (OutputStream out = ExportResponses.open(response, "devices", exportFormat, gzip)) {
+            exportService.exportDevices(protocol, exportFormat, out);
+        }
+    }
+    
     private String getClientIpAddress(HttpServletRequest request) {
         String xForwardedFor = request.getHeader("X-Forwarded-For");
         if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
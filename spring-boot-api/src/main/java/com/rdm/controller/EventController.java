@@ -0,0 +1,33 @@
+package com.rdm.controller;
+
+import com.rdm.security.UserPrincipal;
+import com.rdm.service.LiveEventBroadcaster;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/events")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class EventController {
+
+    private final LiveEventBroadcaster liveEventBroadcaster;
+
+    public EventController(LiveEventBroadcaster liveEventBroadcaster) {
+        this.liveEventBroadcaster = liveEventBroadcaster;
+    }
+
+    /**
+     * Server-sent event stream of device and connection changes
+     * GET /api/events/stream
+     *
+     * Events: device.created, device.updated, device.deleted, device.status,
+     * connection.started, connection.ended, and resync when the client fell
+     * too far behind and should reload.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@AuthenticationPrincipal UserPrincipal principal) {
+        return liveEventBroadcaster.subscribe(principal);
+    }
+}
@@ -0,0 +1,39 @@
+package com.rdm.controller;
+
+import com.rdm.service.ExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Response setup shared by the streaming export endpoints.
+ */
+final class ExportResponses {
+
+    private ExportResponses() {
+    }
+
+    /**
+     * Set export headers on the response and open its body, gzip-compressed as a
+     * .gz attachment when requested. The caller must close the returned stream.
+     */
+    static OutputStream open(HttpServletResponse response, String baseName, ExportService.Format format,
+            boolean gzip) throws IOException {
+        String fileName = baseName + "-" + LocalDate.now() + "." + format.name();
+        String contentType = format == ExportService.Format.csv ? "text/csv; charset=UTF-8" : "application/x-ndjson";
+        if (gzip) {
+            fileName += ".gz";
+            contentType = "application/gzip";
+        }
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+
+        OutputStream out = response.getOutputStream();
+        return gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+    }
+}
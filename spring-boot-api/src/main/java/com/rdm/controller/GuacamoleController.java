@@ -0,0 +1,56 @@
+package com.rdm.controller;
+
+import com.rdm.dto.GuacamoleReconcileReportDTO;
+import com.rdm.service.AuditService;
+import com.rdm.service.GuacamoleReconciler;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/guacamole")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class GuacamoleController {
+
+    private final GuacamoleReconciler guacamoleReconciler;
+    private final AuditService auditService;
+
+    public GuacamoleController(GuacamoleReconciler guacamoleReconciler, AuditService auditService) {
+        this.guacamoleReconciler = guacamoleReconciler;
+        this.auditService = auditService;
+    }
+
+    /**
+     * Compare devices with their Guacamole connections. A dry run (the default)
+     * only reports; otherwise repairs are queued as they are found.
+     * POST /api/guacamole/reconcile?dryRun=true
+     */
+    @PostMapping("/reconcile")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<GuacamoleReconcileReportDTO> reconcile(
+            @RequestParam(defaultValue = "true") boolean dryRun,
+            HttpServletRequest request) {
+        GuacamoleReconcileReportDTO report = guacamoleReconciler.reconcile(dryRun);
+        if (!dryRun) {
+            auditService.logAction(
+                    com.rdm.model.AuditLog.AuditAction.update,
+                    "guacamole",
+                    null,
+                    Map.of("operation", "reconcile", "repairsQueued", report.getRepairsQueued(),
+                            "orphansDeleted", report.getOrphansDeleted()),
+                    getClientIpAddress(request));
+        }
+        return ResponseEntity.ok(report);
+    }
+
+    private String getClientIpAddress(HttpServletRequest request) {
+        String xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
+            return xForwardedFor.split(",")[0].trim();
+        }
+        return request.getRemoteAddr();
+    }
+}
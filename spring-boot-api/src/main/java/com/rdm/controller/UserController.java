@@ -4,16 +4,21 @@ import com.rdm.dto.CreateUserDTO;
 import com.rdm.dto.UpdateUserDTO;
 import com.rdm.dto.UserDTO;
 import com.rdm.model.User;
+import com.rdm.security.UserPrincipal;
+import com.rdm.service.ListingVersions;
 import com.rdm.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 @RestController
 @RequestMapping("/api/users")
@@ -21,17 +26,32 @@ import org.springframework.web.bind.annotation.*;
 public class UserController {
 
     private final UserService userService;
+    private final ListingVersions listingVersions;
 
-    public UserController(UserService userService) {
+    // Browsers keep the listing but revalidate it with If-None-Match on every use
+    private static final CacheControl LISTING_CACHE = CacheControl.noCache().cachePrivate();
+
+    public UserController(UserService userService, ListingVersions listingVersions) {
         this.userService = userService;
+        this.listingVersions = listingVersions;
     }
 
+    /**
+     * List users, with an ETag from the user change counter; a matching
+     * If-None-Match is answered with 304 before any query runs.
+     */
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Page<UserDTO>> getAllUsers(
+            @AuthenticationPrincipal UserPrincipal principal,
+            ServletWebRequest webRequest,
             @PageableDefault(size = 20) Pageable pageable) {
+        String etag = listingVersions.userListTag(principal.getId(), webRequest.getRequest().getQueryString());
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(LISTING_CACHE).build();
+        }
         Page<UserDTO> users = userService.getAllUsers(pageable);
-        return ResponseEntity.ok(users);
+        return ResponseEntity.ok().eTag(etag).cacheControl(LISTING_CACHE).body(users);
     }
 
     @GetMapping("/{id}")
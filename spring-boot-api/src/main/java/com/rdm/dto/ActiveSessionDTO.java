@@ -0,0 +1,32 @@
+package com.rdm.dto;
+
+import com.rdm.service.ActiveSessionRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ActiveSessionDTO {
+    private Integer connectionLogId;
+    private Integer userId;
+    private Integer deviceId;
+    private LocalDateTime connectionStart;
+    private Instant lastHeartbeat;
+
+    public static ActiveSessionDTO fromSession(ActiveSessionRegistry.Session session) {
+        return ActiveSessionDTO.builder()
+                .connectionLogId(session.getConnectionLogId())
+                .userId(session.getUserId())
+                .deviceId(session.getDeviceId())
+                .connectionStart(session.getConnectionStart())
+                .lastHeartbeat(session.getLastHeartbeat())
+                .build();
+    }
+}
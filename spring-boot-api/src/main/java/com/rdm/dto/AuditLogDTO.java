@@ -0,0 +1,40 @@
+package com.rdm.dto;
+
+import com.rdm.model.AuditLog;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditLogDTO {
+    private Integer id;
+    private Integer userId;
+    private String username;
+    private AuditLog.AuditAction action;
+    private String resourceType;
+    private Integer resourceId;
+    private Map<String, Object> details;
+    private String ipAddress;
+    private LocalDateTime timestamp;
+
+    public static AuditLogDTO fromAuditLog(AuditLog log) {
+        return AuditLogDTO.builder()
+                .id(log.getId())
+                .userId(log.getUserId())
+                .username(log.getUser() != null ? log.getUser().getUsername() : null)
+                .action(log.getAction())
+                .resourceType(log.getResourceType())
+                .resourceId(log.getResourceId())
+                .details(log.getDetails())
+                .ipAddress(log.getIpAddress())
+                .timestamp(log.getTimestamp())
+                .build();
+    }
+}
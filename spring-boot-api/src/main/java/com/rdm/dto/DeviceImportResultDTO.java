@@ -0,0 +1,21 @@
+package com.rdm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DeviceImportResultDTO {
+    private int rows;
+    private int created;
+    private int failed; // invalid rows plus rows of batches that could not be written
+    private int batches;
+    private String error; // set when the input could not be read to the end
+    private List<DeviceImportRowDTO> results;
+}
@@ -0,0 +1,20 @@
+package com.rdm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DeviceImportRowDTO {
+    private int row; // 1-based, not counting the CSV header
+    private String status; // created, invalid or failed
+    private Integer deviceId;
+    private String name;
+    private List<String> errors;
+}
@@ -0,0 +1,19 @@
+package com.rdm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GuacamoleDriftDTO {
+    private String type; // missing, drifted, stale, duplicate or orphaned
+    private Integer deviceId;
+    private Integer connectionId;
+    private List<String> differences; // names of differing fields only, never their values
+}
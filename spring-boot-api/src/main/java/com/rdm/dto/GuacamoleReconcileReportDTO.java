@@ -0,0 +1,28 @@
+package com.rdm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GuacamoleReconcileReportDTO {
+    private boolean dryRun;
+    private long durationMs;
+    private long devicesScanned;
+    private long connectionsScanned;
+    private long inSync;
+    private long missing; // active devices without an existing connection
+    private long drifted; // name, protocol or parameters differ
+    private long stale; // inactive devices still holding a connection
+    private long duplicate; // devices sharing a connection another device owns
+    private long orphaned; // connections no device points at
+    private long repairsQueued; // devices handed to the Guacamole outbox
+    private long orphansDeleted;
+    private List<GuacamoleDriftDTO> samples; // the first findings, up to the report limit
+}
@@ -0,0 +1,14 @@
+package com.rdm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProvisionDevicesRequest {
+    private List<Integer> deviceIds; // empty or missing means all active devices
+}
@@ -0,0 +1,18 @@
+package com.rdm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProvisionResultDTO {
+    private int devices;
+    private int created;
+    private int updated; // connections whose name or protocol changed
+    private int parametersWritten;
+    private int parametersDeleted;
+}
@@ -0,0 +1,18 @@
+package com.rdm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WaitlistTicketDTO {
+    private String ticketId;
+    private Integer deviceId;
+    private String status; // waiting or granted
+    private Integer position; // 1-based place in the device's queue while waiting
+    private String reason;
+}
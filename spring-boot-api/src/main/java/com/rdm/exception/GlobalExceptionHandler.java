@@ -42,6 +42,21 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(SessionLimitExceededException.class)
+    public ResponseEntity<Object> handleSessionLimitExceededException(
+            SessionLimitExceededException ex, WebRequest request) {
+        if (ex.getTicket() != null) {
+            // Queued: the client polls the ticket and retries once it is granted
+            return new ResponseEntity<>(ex.getTicket(), HttpStatus.ACCEPTED);
+        }
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.TOO_MANY_REQUESTS.value(),
+                ex.getMessage(),
+                "Too Many Requests",
+                request.getDescription(false).replace("uri=", ""));
+        return new ResponseEntity<>(error, HttpStatus.TOO_MANY_REQUESTS);
+    }
+
     @ExceptionHandler(AuthenticationException.class)
     public ResponseEntity<ErrorResponse> handleAuthenticationException(
             AuthenticationException ex, WebRequest request) {
@@ -0,0 +1,24 @@
+package com.rdm.exception;
+
+import com.rdm.dto.WaitlistTicketDTO;
+
+/**
+ * Thrown when a connection would exceed a concurrent session limit. Carries
+ * the waitlist ticket issued instead, if the waitlist is enabled.
+ */
+public class SessionLimitExceededException extends RuntimeException {
+    private final WaitlistTicketDTO ticket;
+
+    public SessionLimitExceededException(String message) {
+        this(message, null);
+    }
+
+    public SessionLimitExceededException(String message, WaitlistTicketDTO ticket) {
+        super(message);
+        this.ticket = ticket;
+    }
+
+    public WaitlistTicketDTO getTicket() {
+        return ticket;
+    }
+}
@@ -5,6 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 import org.springframework.data.annotation.CreatedDate;
@@ -16,6 +18,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "devices", schema = "app")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "devices")
 @EntityListeners(AuditingEntityListener.class)
 @Data
 @NoArgsConstructor
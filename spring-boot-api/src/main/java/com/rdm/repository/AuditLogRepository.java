@@ -31,5 +31,25 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Integer> {
         @Param("endDate") LocalDateTime endDate,
         Pageable pageable
     );
-}
 
+    /**
+     * Keyset page of audit logs, newest first, strictly after the given position.
+     */
+    @Query("SELECT al FROM AuditLog al LEFT JOIN FETCH al.user WHERE " +
+           "(CAST(:userId AS Integer) IS NULL OR al.userId = :userId) AND " +
+           "(CAST(:action AS String) IS NULL OR al.action = :action) AND " +
+           "(CAST(:resourceType AS String) IS NULL OR al.resourceType = :resourceType) AND " +
+           "al.timestamp >= :startDate AND al.timestamp <= :endDate AND " +
+           "al.timestamp <= :afterTimestamp AND (al.timestamp < :afterTimestamp OR al.id < :afterId) " +
+           "ORDER BY al.timestamp DESC, al.id DESC")
+    List<AuditLog> searchAuditLogsBefore(
+        @Param("userId") Integer userId,
+        @Param("action") AuditLog.AuditAction action,
+        @Param("resourceType") String resourceType,
+        @Param("startDate") LocalDateTime startDate,
+        @Param("endDate") LocalDateTime endDate,
+        @Param("afterTimestamp") LocalDateTime afterTimestamp,
+        @Param("afterId") Integer afterId,
+        Pageable pageable
+    );
+}
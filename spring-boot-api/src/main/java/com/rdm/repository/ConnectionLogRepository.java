@@ -1,5 +1,6 @@
 package com.rdm.repository;
 
+import com.rdm.dto.ConnectionLogDTO;
 import com.rdm.model.ConnectionLog;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -13,9 +14,22 @@ import java.util.List;
 
 @Repository
 public interface ConnectionLogRepository extends JpaRepository<ConnectionLog, Integer> {
-    Page<ConnectionLog> findByUserIdOrderByConnectionStartDesc(Integer userId, Pageable pageable);
+    /*
+     * Listing queries select straight into ConnectionLogDTO with the user and device
+     * columns joined in, so a page is one statement and never loads device credentials.
+     */
+    String LISTING_SELECT = "SELECT new com.rdm.dto.ConnectionLogDTO(cl.id, cl.userId, u.username, " +
+           "cl.deviceId, d.name, d.host, CAST(d.protocol AS String), cl.connectionStart, cl.connectionEnd, " +
+           "cl.duration, cl.status, cl.ipAddress, cl.userAgent) " +
+           "FROM ConnectionLog cl LEFT JOIN cl.user u LEFT JOIN cl.device d ";
+
+    @Query(value = LISTING_SELECT + "WHERE cl.userId = :userId ORDER BY cl.connectionStart DESC",
+           countQuery = "SELECT COUNT(cl) FROM ConnectionLog cl WHERE cl.userId = :userId")
+    Page<ConnectionLogDTO> findUserConnections(@Param("userId") Integer userId, Pageable pageable);
     
-    Page<ConnectionLog> findByDeviceIdOrderByConnectionStartDesc(Integer deviceId, Pageable pageable);
+    @Query(value = LISTING_SELECT + "WHERE cl.deviceId = :deviceId ORDER BY cl.connectionStart DESC",
+           countQuery = "SELECT COUNT(cl) FROM ConnectionLog cl WHERE cl.deviceId = :deviceId")
+    Page<ConnectionLogDTO> findDeviceConnections(@Param("deviceId") Integer deviceId, Pageable pageable);
     
     @Query("SELECT cl FROM ConnectionLog cl WHERE cl.userId = :userId AND " +
            "cl.connectionStart >= :startDate AND cl.connectionStart <= :endDate " +
@@ -26,5 +40,32 @@ public interface ConnectionLogRepository extends JpaRepository<ConnectionLog, In
         @Param("endDate") LocalDateTime endDate,
         Pageable pageable
     );
-}
 
+    /**
+     * Keyset page of a user's connections, newest first, strictly after the given position.
+     */
+    @Query(LISTING_SELECT +
+           "WHERE cl.userId = :userId AND cl.connectionStart <= :afterStart AND " +
+           "(cl.connectionStart < :afterStart OR cl.id < :afterId) " +
+           "ORDER BY cl.connectionStart DESC, cl.id DESC")
+    List<ConnectionLogDTO> findUserConnectionsBefore(
+        @Param("userId") Integer userId,
+        @Param("afterStart") LocalDateTime afterStart,
+        @Param("afterId") Integer afterId,
+        Pageable pageable
+    );
+
+    /**
+     * Keyset page of a device's connections, newest first, strictly after the given position.
+     */
+    @Query(LISTING_SELECT +
+           "WHERE cl.deviceId = :deviceId AND cl.connectionStart <= :afterStart AND " +
+           "(cl.connectionStart < :afterStart OR cl.id < :afterId) " +
+           "ORDER BY cl.connectionStart DESC, cl.id DESC")
+    List<ConnectionLogDTO> findDeviceConnectionsBefore(
+        @Param("deviceId") Integer deviceId,
+        @Param("afterStart") LocalDateTime afterStart,
+        @Param("afterId") Integer afterId,
+        Pageable pageable
+    );
+}
@@ -1,32 +1,101 @@
 package com.rdm.repository;
 
 import com.rdm.model.Device;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DeviceRepository extends JpaRepository<Device, Integer> {
     Page<Device> findByIsActiveTrue(Pageable pageable);
+    
+    List<Device> findByIsActiveTrue();
 
-    @Query("SELECT d FROM Device d WHERE d.isActive = true AND " +
-            "(:name IS NULL OR LOWER(d.name) LIKE LOWER(CONCAT('%', :name, '%'))) AND " +
-            "(:protocol IS NULL OR d.protocol = :protocol) AND " +
-            "(:status IS NULL OR d.status = :status)")
+    /*
+     * Search filters as native SQL so PostgreSQL can use the trigram indexes for
+     * ILIKE and the jsonb_path_ops index for tag containment (migration 008).
+     * Patterns arrive already wrapped in % and escaped; null skips a filter.
+     */
+    String SEARCH_FILTERS =
+            "d.is_active = TRUE " +
+            "AND (CAST(:name AS text) IS NULL OR d.name ILIKE CAST(:name AS text)) " +
+            "AND (CAST(:host AS text) IS NULL OR d.host ILIKE CAST(:host AS text)) " +
+            "AND (CAST(:q AS text) IS NULL OR d.name ILIKE CAST(:q AS text) " +
+            "OR d.host ILIKE CAST(:q AS text) OR d.description ILIKE CAST(:q AS text)) " +
+            "AND (CAST(:protocol AS text) IS NULL OR d.protocol = CAST(CAST(:protocol AS text) AS app.device_protocol)) " +
+            "AND (CAST(:status AS text) IS NULL OR d.status = CAST(CAST(:status AS text) AS app.device_status)) " +
+            "AND (CAST(:tags AS text) IS NULL OR d.tags @> CAST(CAST(:tags AS text) AS jsonb))";
+
+    String VISIBLE_TO_USER =
+            " AND (EXISTS (SELECT 1 FROM app.user_devices ud WHERE ud.device_id = d.id AND ud.user_id = :userId) " +
+            "OR EXISTS (SELECT 1 FROM app.group_devices gd JOIN app.group_members gm ON gm.group_id = gd.group_id " +
+            "WHERE gd.device_id = d.id AND gm.user_id = :userId))";
+
+    /**
+     * Active devices matching the search filters. Sort properties must be column names.
+     */
+    @Query(value = "SELECT d.* FROM app.devices d WHERE " + SEARCH_FILTERS,
+            countQuery = "SELECT COUNT(*) FROM app.devices d WHERE " + SEARCH_FILTERS,
+            nativeQuery = true)
     Page<Device> searchDevices(
             @Param("name") String name,
-            @Param("protocol") Device.Protocol protocol,
-            @Param("status") Device.DeviceStatus status,
+            @Param("host") String host,
+            @Param("q") String q,
+            @Param("protocol") String protocol,
+            @Param("status") String status,
+            @Param("tags") String tags,
             Pageable pageable);
 
+    /**
+     * Active devices the user can see through a direct grant or a group grant,
+     * with the same filters as searchDevices, resolved in a single statement.
+     */
+    @Query(value = "SELECT d.* FROM app.devices d WHERE " + SEARCH_FILTERS + VISIBLE_TO_USER,
+            countQuery = "SELECT COUNT(*) FROM app.devices d WHERE " + SEARCH_FILTERS + VISIBLE_TO_USER,
+            nativeQuery = true)
+    Page<Device> findVisibleDevices(
+            @Param("userId") Integer userId,
+            @Param("name") String name,
+            @Param("host") String host,
+            @Param("q") String q,
+            @Param("protocol") String protocol,
+            @Param("status") String status,
+            @Param("tags") String tags,
+            Pageable pageable);
+
+    /**
+     * Cached: the result is served from the query cache and the devices entity region
+     * until a devices write goes through Hibernate, or JDBC writers evict it through
+     * {@link com.rdm.service.EntityCacheEvictor}.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Device> findByIdAndIsActiveTrue(Integer id);
 
+    /**
+     * Devices locked for update, in id order so concurrent lockers cannot deadlock.
+     * Used wherever a Guacamole connection may be created, so two writers never
+     * both create one for the same device.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM Device d WHERE d.id IN :ids ORDER BY d.id")
+    List<Device> findAllByIdForUpdate(@Param("ids") Collection<Integer> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM Device d WHERE d.isActive = true ORDER BY d.id")
+    List<Device> findActiveForUpdate();
+
     List<Device> findByProtocol(Device.Protocol protocol);
 
     List<Device> findByStatus(Device.DeviceStatus status);
@@ -12,9 +12,11 @@ import org.springframework.transaction.annotation.Transactional;
 public class CustomUserDetailsService implements UserDetailsService {
     
     private final UserRepository userRepository;
+    private final UserPrincipalCache userPrincipalCache;
     
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository, UserPrincipalCache userPrincipalCache) {
         this.userRepository = userRepository;
+        this.userPrincipalCache = userPrincipalCache;
     }
     
     @Override
@@ -26,6 +28,24 @@ public class CustomUserDetailsService implements UserDetailsService {
         return UserPrincipal.create(user);
     }
     
+    /**
+     * Load the principal for an already-authenticated request, served from the
+     * principal cache when possible. Login still goes through loadUserByUsername.
+     */
+    public UserDetails loadCachedUserByUsername(String username) throws UsernameNotFoundException {
+        UserPrincipal cached = userPrincipalCache.get(username);
+        if (cached != null) {
+            return cached;
+        }
+
+        User user = userRepository.findActiveUserByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+
+        UserPrincipal principal = UserPrincipal.create(user);
+        userPrincipalCache.put(principal);
+        return principal;
+    }
+    
     @Transactional
     public UserDetails loadUserById(Integer id) {
         User user = userRepository.findById(id)
@@ -0,0 +1,91 @@
+package com.rdm.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache of authenticated principals keyed by username, so the JWT
+ * filter does not query the users table on every request.
+ */
+@Component
+public class UserPrincipalCache {
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int maxSize;
+
+    public UserPrincipalCache(
+            @Value("${spring.security.principal-cache.ttl:60s}") Duration ttl,
+            @Value("${spring.security.principal-cache.max-size:10000}") int maxSize) {
+        this.ttlMillis = ttl.toMillis();
+        this.maxSize = maxSize;
+    }
+
+    public UserPrincipal get(String username) {
+        Entry entry = entries.get(username);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(username, entry);
+            return null;
+        }
+        return entry.principal;
+    }
+
+    public void put(UserPrincipal principal) {
+        if (maxSize <= 0 || ttlMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (entries.size() >= maxSize) {
+            evict(now);
+        }
+        entries.put(principal.getUsername(), new Entry(principal, now + ttlMillis));
+    }
+
+    /**
+     * Evict the cached principal for a user. When called inside a transaction the
+     * eviction is deferred until commit, so a concurrent request cannot re-cache
+     * the pre-update row in between.
+     */
+    public void invalidate(Integer userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictUser(userId);
+                }
+            });
+        } else {
+            evictUser(userId);
+        }
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    private void evictUser(Integer userId) {
+        entries.values().removeIf(entry -> entry.principal.getId().equals(userId));
+    }
+
+    private void evict(long now) {
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+        int excess = entries.size() - maxSize + Math.max(1, maxSize / 8);
+        Iterator<String> it = entries.keySet().iterator();
+        while (excess-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private record Entry(UserPrincipal principal, long expiresAt) {
+    }
+}
@@ -0,0 +1,257 @@
+package com.rdm.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory registry of open connection sessions, keyed by connection log id
+ * and indexed by user and device.
+ *
+ * Sessions are added when a connection is initiated and removed when it is
+ * ended or reaped by {@link SessionReaper}; open sessions are loaded from
+ * app.connection_logs at startup. Concurrency counts come from here instead of
+ * scanning connection_logs for rows without an end. Removing a session gives
+ * its slot back to {@link SessionLimiter}.
+ *
+ * Heartbeats are written to connection_logs.last_heartbeat, so they may reach
+ * any instance, and the reaper selects expired sessions from there. With
+ * several instances this registry is one instance's view: sessions ended or
+ * reaped elsewhere are dropped from it on each reaper run, and session limits
+ * count the sessions this instance knows of.
+ */
+@Component
+public class ActiveSessionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActiveSessionRegistry.class);
+
+    private static final String HEARTBEAT_SQL = "UPDATE app.connection_logs SET last_heartbeat = now() "
+            + "WHERE id = ? AND connection_end IS NULL AND status = 'success'";
+
+    private final Map<Integer, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Integer>> sessionsByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Integer>> sessionsByDevice = new ConcurrentHashMap<>();
+    private final JdbcTemplate jdbcTemplate;
+    private final SessionLimiter sessionLimiter;
+
+    public ActiveSessionRegistry(JdbcTemplate jdbcTemplate, SessionLimiter sessionLimiter,
+                                 MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sessionLimiter = sessionLimiter;
+        Gauge.builder("rdm.sessions.active", sessions, Map::size)
+                .description("Open connection sessions")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOpenSessions() {
+        jdbcTemplate.query("SELECT id, user_id, device_id, connection_start, "
+                        + "COALESCE(last_heartbeat, connection_start) FROM app.connection_logs "
+                        + "WHERE connection_end IS NULL AND status = 'success'",
+                rs -> {
+                    Session session = new Session(rs.getInt(1), rs.getInt(2), rs.getInt(3),
+                            rs.getTimestamp(4).toLocalDateTime(), rs.getTimestamp(5).toInstant());
+                    add(session);
+                    sessionLimiter.track(session.userId, session.deviceId);
+                });
+        logger.info("Loaded {} open connection sessions", sessions.size());
+    }
+
+    /**
+     * Register a new session once the current transaction commits.
+     */
+    public void register(Integer connectionLogId, Integer userId, Integer deviceId, LocalDateTime connectionStart) {
+        Session session = new Session(connectionLogId, userId, deviceId, connectionStart, Instant.now());
+        afterCommit(() -> add(session));
+    }
+
+    /**
+     * Remove a session once the current transaction commits.
+     */
+    public void unregister(Integer connectionLogId) {
+        afterCommit(() -> remove(connectionLogId));
+    }
+
+    /**
+     * Record a heartbeat for the session, whichever instance it was started on.
+     *
+     * @param userId owner the session must belong to, or null for any
+     * @return whether the session is open (and owned by the user)
+     */
+    public boolean heartbeat(Integer connectionLogId, Integer userId) {
+        int updated = userId == null
+                ? jdbcTemplate.update(HEARTBEAT_SQL, connectionLogId)
+                : jdbcTemplate.update(HEARTBEAT_SQL + " AND user_id = ?", connectionLogId, userId);
+        Session session = sessions.get(connectionLogId);
+        if (session != null && updated != 0) {
+            session.lastHeartbeat = Instant.now();
+        }
+        return updated != 0;
+    }
+
+    public Session get(Integer connectionLogId) {
+        return sessions.get(connectionLogId);
+    }
+
+    public Collection<Session> getSessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    public List<Session> getUserSessions(Integer userId) {
+        return lookup(sessionsByUser.get(userId));
+    }
+
+    public List<Session> getDeviceSessions(Integer deviceId) {
+        return lookup(sessionsByDevice.get(deviceId));
+    }
+
+    public int countUserSessions(Integer userId) {
+        Set<Integer> ids = sessionsByUser.get(userId);
+        return ids != null ? ids.size() : 0;
+    }
+
+    public int countDeviceSessions(Integer deviceId) {
+        Set<Integer> ids = sessionsByDevice.get(deviceId);
+        return ids != null ? ids.size() : 0;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Remove sessions that are no longer open in app.connection_logs, e.g.
+     * because they were ended or reaped by another instance.
+     *
+     * @return number of sessions removed
+     */
+    int removeEnded() {
+        Integer[] ids = sessions.keySet().toArray(Integer[]::new);
+        if (ids.length == 0) {
+            return 0;
+        }
+        Set<Integer> open = new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM app.connection_logs "
+                + "WHERE id = ANY(?) AND connection_end IS NULL AND status = 'success'", Integer.class, (Object) ids));
+        int removed = 0;
+        for (Integer id : ids) {
+            if (!open.contains(id)) {
+                remove(id);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    void add(Session session) {
+        sessions.put(session.connectionLogId, session);
+        addIndexEntry(sessionsByUser, session.userId, session.connectionLogId);
+        addIndexEntry(sessionsByDevice, session.deviceId, session.connectionLogId);
+    }
+
+    void remove(Integer connectionLogId) {
+        Session session = sessions.remove(connectionLogId);
+        if (session != null) {
+            removeIndexEntry(sessionsByUser, session.userId, connectionLogId);
+            removeIndexEntry(sessionsByDevice, session.deviceId, connectionLogId);
+            sessionLimiter.release(session.userId, session.deviceId);
+        }
+    }
+
+    private List<Session> lookup(Set<Integer> ids) {
+        if (ids == null) {
+            return List.of();
+        }
+        List<Session> result = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Session session = sessions.get(id);
+            if (session != null) {
+                result.add(session);
+            }
+        }
+        return result;
+    }
+
+    // Index sets are only modified inside compute so an emptied set is never removed under a concurrent add
+    private static void addIndexEntry(Map<Integer, Set<Integer>> index, Integer key, Integer connectionLogId) {
+        index.compute(key, (k, ids) -> {
+            Set<Integer> result = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            result.add(connectionLogId);
+            return result;
+        });
+    }
+
+    private static void removeIndexEntry(Map<Integer, Set<Integer>> index, Integer key, Integer connectionLogId) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(connectionLogId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    public static final class Session {
+        private final Integer connectionLogId;
+        private final Integer userId;
+        private final Integer deviceId;
+        private final LocalDateTime connectionStart;
+        private volatile Instant lastHeartbeat;
+
+        Session(Integer connectionLogId, Integer userId, Integer deviceId, LocalDateTime connectionStart,
+                Instant lastHeartbeat) {
+            this.connectionLogId = connectionLogId;
+            this.userId = userId;
+            this.deviceId = deviceId;
+            this.connectionStart = connectionStart;
+            this.lastHeartbeat = lastHeartbeat;
+        }
+
+        public Integer getConnectionLogId() {
+            return connectionLogId;
+        }
+
+        public Integer getUserId() {
+            return userId;
+        }
+
+        public Integer getDeviceId() {
+            return deviceId;
+        }
+
+        public LocalDateTime getConnectionStart() {
+            return connectionStart;
+        }
+
+        public Instant getLastHeartbeat() {
+            return lastHeartbeat;
+        }
+    }
+}
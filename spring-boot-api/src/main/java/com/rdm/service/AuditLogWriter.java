@@ -0,0 +1,212 @@
+package com.rdm.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rdm.config.VirtualThreads;
+import com.rdm.model.AuditLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers audit records in a bounded queue and writes them to app.audit_logs
+ * from a single writer thread using JDBC batch inserts.
+ *
+ * When the queue is full, {@code block} waits up to the offer timeout for room
+ * and then drops, {@code drop} drops immediately. Dropped records are counted in
+ * {@code rdm.audit.dropped}. Anything still queued is written on shutdown.
+ */
+@Component
+public class AuditLogWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogWriter.class);
+
+    private static final String INSERT_SQL = "INSERT INTO app.audit_logs "
+            + "(user_id, action, resource_type, resource_id, details, ip_address, timestamp) "
+            + "VALUES (?, CAST(? AS app.audit_action), ?, ?, CAST(? AS jsonb), CAST(? AS inet), ?)";
+
+    private static final long POLL_INTERVAL_MS = 200;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<AuditLog> queue;
+    private final int batchSize;
+    private final boolean blockWhenFull;
+    private final Duration offerTimeout;
+    private final Counter droppedCounter;
+    private final Counter failedCounter;
+    private final Counter writtenCounter;
+    private final Timer batchTimer;
+    private final Environment environment;
+
+    private Thread writerThread;
+    private volatile boolean running = true;
+
+    public AuditLogWriter(JdbcTemplate jdbcTemplate,
+                          ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          Environment environment,
+                          @Value("${rdm.audit.queue-capacity:10000}") int queueCapacity,
+                          @Value("${rdm.audit.batch-size:200}") int batchSize,
+                          @Value("${rdm.audit.overflow-policy:block}") String overflowPolicy,
+                          @Value("${rdm.audit.offer-timeout:PT1S}") Duration offerTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.blockWhenFull = "block".equalsIgnoreCase(overflowPolicy);
+        this.offerTimeout = offerTimeout;
+        this.environment = environment;
+        this.droppedCounter = Counter.builder("rdm.audit.dropped")
+                .description("Audit records dropped because the write queue was full")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("rdm.audit.failed")
+                .description("Audit records the database rejected")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("rdm.audit.written")
+                .description("Audit records written to the database")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("rdm.audit.write")
+                .description("Time to write one batch of audit records, including row-by-row retries")
+                .register(meterRegistry);
+        Gauge.builder("rdm.audit.queue.depth", queue, BlockingQueue::size)
+                .description("Audit records waiting to be written")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        writerThread = VirtualThreads.threadFactory(environment, "audit-log-writer-").newThread(this::run);
+        writerThread.start();
+    }
+
+    /**
+     * Queue a record for writing. Never throws; a record that cannot be queued
+     * is dropped and counted.
+     */
+    public void enqueue(AuditLog auditLog) {
+        boolean queued;
+        if (!running) {
+            queued = false;
+        } else if (blockWhenFull) {
+            try {
+                queued = queue.offer(auditLog, offerTimeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+        } else {
+            queued = queue.offer(auditLog);
+        }
+        if (!queued) {
+            droppedCounter.increment();
+            logger.warn("Audit queue full or closed, dropped {} on {} {}", auditLog.getAction(),
+                    auditLog.getResourceType(), auditLog.getResourceId());
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Whatever the writer did not get to, including records queued while it was stopping
+        List<AuditLog> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            write(remaining);
+        }
+    }
+
+    private void run() {
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        while (running) {
+            AuditLog first;
+            try {
+                // Poll rather than take so stop() need not interrupt a thread that may be mid-write
+                first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<AuditLog> records) {
+        for (int from = 0; from < records.size(); from += batchSize) {
+            List<AuditLog> batch = records.subList(from, Math.min(from + batchSize, records.size()));
+            Timer.Sample sample = Timer.start();
+            try {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), this::bind);
+                writtenCounter.increment(batch.size());
+            } catch (DataAccessException e) {
+                // One bad row (e.g. an unparsable IP address) fails the whole batch; retry row by row
+                logger.warn("Audit batch insert failed, retrying {} records individually", batch.size(), e);
+                for (AuditLog auditLog : batch) {
+                    try {
+                        jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, auditLog));
+                        writtenCounter.increment();
+                    } catch (DataAccessException rowError) {
+                        failedCounter.increment();
+                        logger.error("Failed to write audit record {} on {} {}", auditLog.getAction(),
+                                auditLog.getResourceType(), auditLog.getResourceId(), rowError);
+                    }
+                }
+            }
+            sample.stop(batchTimer);
+        }
+    }
+
+    private void bind(PreparedStatement ps, AuditLog auditLog) throws SQLException {
+        ps.setObject(1, auditLog.getUserId(), Types.INTEGER);
+        ps.setString(2, auditLog.getAction().name());
+        ps.setString(3, auditLog.getResourceType());
+        ps.setObject(4, auditLog.getResourceId(), Types.INTEGER);
+        ps.setString(5, toJson(auditLog));
+        ps.setString(6, auditLog.getIpAddress());
+        ps.setObject(7, auditLog.getTimestamp());
+    }
+
+    private String toJson(AuditLog auditLog) {
+        try {
+            return objectMapper.writeValueAsString(auditLog.getDetails());
+        } catch (JsonProcessingException e) {
+            logger.warn("Could not serialize audit details for {} {}", auditLog.getResourceType(),
+                    auditLog.getResourceId(), e);
+            return "{}";
+        }
+    }
+}
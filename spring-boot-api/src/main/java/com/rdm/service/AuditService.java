@@ -1,25 +1,44 @@
 package com.rdm.service;
 
+import com.rdm.dto.AuditLogDTO;
+import com.rdm.dto.CursorPage;
 import com.rdm.model.AuditLog;
 import com.rdm.repository.AuditLogRepository;
-import org.springframework.scheduling.annotation.Async;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
 public class AuditService {
     
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    
+    private final AuditLogWriter auditLogWriter;
     private final AuditLogRepository auditLogRepository;
+    private final Timer enqueueTimer;
     
-    public AuditService(AuditLogRepository auditLogRepository) {
+    public AuditService(AuditLogWriter auditLogWriter, AuditLogRepository auditLogRepository,
+            MeterRegistry meterRegistry) {
+        this.auditLogWriter = auditLogWriter;
         this.auditLogRepository = auditLogRepository;
+        this.enqueueTimer = Timer.builder("rdm.audit.enqueue")
+                .description("Time callers spend handing audit records to the writer, including waits on a full queue")
+                .register(meterRegistry);
     }
     
-    @Async
+    /**
+     * Record an audit event. The acting user is resolved here on the caller's
+     * thread; the record itself is written in the background by {@link AuditLogWriter}.
+     */
     public void logAction(AuditLog.AuditAction action, String resourceType, Integer resourceId, Map<String, Object> details, String ipAddress) {
         Integer userId = getCurrentUserId();
         
@@ -30,21 +49,39 @@ public class AuditService {
                 .resourceId(resourceId)
                 .details(details != null ? details : new HashMap<>())
                 .ipAddress(ipAddress)
+                .timestamp(LocalDateTime.now())
                 .build();
         
-        auditLogRepository.save(auditLog);
+        enqueueTimer.record(() -> auditLogWriter.enqueue(auditLog));
     }
     
-    @Async
     public void logAction(AuditLog.AuditAction action, String resourceType, Integer resourceId, String ipAddress) {
         logAction(action, resourceType, resourceId, null, ipAddress);
     }
     
-    @Async
     public void logAction(AuditLog.AuditAction action, String resourceType, Integer resourceId) {
         logAction(action, resourceType, resourceId, null, null);
     }
     
+    /**
+     * Search audit logs, newest first, using keyset pagination. All filters are optional.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<AuditLogDTO> searchAuditLogs(Integer userId, AuditLog.AuditAction action, String resourceType,
+            LocalDateTime startDate, LocalDateTime endDate, String cursor, int size) {
+        LogCursor.validatePageSize(size);
+        LogCursor after = LogCursor.decode(cursor);
+        
+        List<AuditLog> logs = auditLogRepository.searchAuditLogsBefore(
+                userId, action, resourceType,
+                startDate != null ? startDate : EARLIEST,
+                endDate != null ? endDate : LogCursor.START.timestamp(),
+                after.timestamp(), after.id(),
+                PageRequest.of(0, size + 1));
+        return LogCursor.toPage(logs, size, log -> new LogCursor(log.getTimestamp(), log.getId()),
+                AuditLogDTO::fromAuditLog);
+    }
+    
     private Integer getCurrentUserId() {
         try {
             Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
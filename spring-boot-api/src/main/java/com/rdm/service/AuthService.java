@@ -7,6 +7,7 @@ import com.rdm.model.User;
 import com.rdm.repository.UserRepository;
 import com.rdm.security.JwtTokenProvider;
 import com.rdm.security.UserPrincipal;
+import com.rdm.security.UserPrincipalCache;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -22,13 +23,19 @@ public class AuthService {
     private final AuthenticationManager authenticationManager;
     private final JwtTokenProvider tokenProvider;
     private final UserRepository userRepository;
+    private final UserPrincipalCache userPrincipalCache;
+    private final ListingVersions listingVersions;
     
     public AuthService(AuthenticationManager authenticationManager, 
                       JwtTokenProvider tokenProvider,
-                      UserRepository userRepository) {
+                      UserRepository userRepository,
+                      UserPrincipalCache userPrincipalCache,
+                      ListingVersions listingVersions) {
         this.authenticationManager = authenticationManager;
         this.tokenProvider = tokenProvider;
         this.userRepository = userRepository;
+        this.userPrincipalCache = userPrincipalCache;
+        this.listingVersions = listingVersions;
     }
     
     @Transactional
@@ -49,6 +56,8 @@ public class AuthService {
         // Update last login
         user.setLastLogin(LocalDateTime.now());
         userRepository.save(user);
+        userPrincipalCache.invalidate(user.getId());
+        listingVersions.usersChanged();
         
         return LoginResponse.builder()
                 .token(jwt)
@@ -1,24 +1,37 @@
 package com.rdm.service;
 
+import com.rdm.dto.ActiveSessionDTO;
 import com.rdm.dto.ConnectionInitiateResponse;
 import com.rdm.dto.ConnectionLogDTO;
+import com.rdm.dto.CursorPage;
+import com.rdm.dto.WaitlistTicketDTO;
 import com.rdm.exception.BadRequestException;
 import com.rdm.exception.ResourceNotFoundException;
+import com.rdm.exception.SessionLimitExceededException;
 import com.rdm.model.ConnectionLog;
 import com.rdm.model.Device;
 import com.rdm.model.User;
 import com.rdm.model.UserDevice;
 import com.rdm.repository.ConnectionLogRepository;
 import com.rdm.repository.DeviceRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
 
 @Service
 public class ConnectionService {
@@ -29,33 +42,53 @@ public class ConnectionService {
     private final DeviceRepository deviceRepository;
     private final PermissionService permissionService;
     private final GuacamoleService guacamoleService;
+    private final GuacamoleOutbox guacamoleOutbox;
     private final AuditService auditService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ActiveSessionRegistry activeSessionRegistry;
+    private final SessionLimiter sessionLimiter;
+    private final MeterRegistry meterRegistry;
 
     public ConnectionService(
             ConnectionLogRepository connectionLogRepository,
             DeviceRepository deviceRepository,
             PermissionService permissionService,
             GuacamoleService guacamoleService,
-            AuditService auditService) {
+            GuacamoleOutbox guacamoleOutbox,
+            AuditService auditService,
+            ApplicationEventPublisher eventPublisher,
+            ActiveSessionRegistry activeSessionRegistry,
+            SessionLimiter sessionLimiter,
+            MeterRegistry meterRegistry) {
         this.connectionLogRepository = connectionLogRepository;
         this.deviceRepository = deviceRepository;
         this.permissionService = permissionService;
         this.guacamoleService = guacamoleService;
+        this.guacamoleOutbox = guacamoleOutbox;
         this.auditService = auditService;
+        this.eventPublisher = eventPublisher;
+        this.activeSessionRegistry = activeSessionRegistry;
+        this.sessionLimiter = sessionLimiter;
+        this.meterRegistry = meterRegistry;
     }
 
     /**
      * Initiate a connection to a device
      * 
-     * @param deviceId  The device ID to connect to
-     * @param ipAddress The client IP address
-     * @param userAgent The client user agent
+     * @param deviceId        The device ID to connect to
+     * @param waitlistTicket  A granted waitlist ticket to use instead of taking a new slot, or null
+     * @param ipAddress       The client IP address
+     * @param userAgent       The client user agent
      * @return ConnectionInitiateResponse with connection URL and log ID
+     * @throws SessionLimitExceededException if a concurrent session limit is reached
      */
     @Transactional
-    public ConnectionInitiateResponse initiateConnection(Integer deviceId, String ipAddress, String userAgent) {
+    public ConnectionInitiateResponse initiateConnection(Integer deviceId, String waitlistTicket, String ipAddress,
+            String userAgent) {
         logger.info("Initiating connection to device: {} from IP: {}", deviceId, ipAddress);
 
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
         try {
             Integer userId = permissionService.getCurrentUserId();
             User user = permissionService.getCurrentUser();
@@ -83,25 +116,30 @@ public class ConnectionService {
             boolean canControl = permissionService.isAdmin() ||
                     permissionService.canControlDevice(userId, deviceId);
 
-            // Ensure Guacamole connection exists
+            // Take a session slot; it is given back if anything below fails
+            if (waitlistTicket != null) {
+                sessionLimiter.claim(waitlistTicket, userId, deviceId);
+            } else {
+                sessionLimiter.acquire(userId, deviceId);
+            }
+
+            // Ensure Guacamole connection exists; a new device may still be waiting in the outbox
             String guacamoleConnId = device.getGuacamoleConnId();
             if (guacamoleConnId == null || guacamoleConnId.isEmpty()) {
-                logger.info("Device {} has no Guacamole connection, creating one", deviceId);
                 try {
-                    guacamoleConnId = guacamoleService.createGuacamoleConnection(device);
-                    device.setGuacamoleConnId(guacamoleConnId);
-                    deviceRepository.save(device);
+                    guacamoleConnId = guacamoleOutbox.ensureConnection(device);
                 } catch (Exception e) {
                     logger.error("Failed to create Guacamole connection for device: {}", deviceId, e);
                     throw new BadRequestException("Failed to create connection: " + e.getMessage());
                 }
             }
 
-            // Create connection log
+            // Create connection log. The start is kept at database precision because the
+            // session reaper matches on it to find the row's partition.
             ConnectionLog connectionLog = ConnectionLog.builder()
                     .userId(userId)
                     .deviceId(deviceId)
-                    .connectionStart(LocalDateTime.now())
+                    .connectionStart(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS))
                     .status(ConnectionLog.ConnectionStatus.success)
                     .ipAddress(ipAddress)
                     .userAgent(userAgent)
@@ -132,8 +170,18 @@ public class ConnectionService {
                             "protocol", device.getProtocol().name()),
                     ipAddress);
 
+            activeSessionRegistry.register(savedLog.getId(), userId, deviceId, savedLog.getConnectionStart());
+            eventPublisher.publishEvent(LiveEvent.connection(LiveEvent.CONNECTION_STARTED, userId, deviceId,
+                    java.util.Map.of(
+                            "connectionLogId", savedLog.getId(),
+                            "deviceId", deviceId,
+                            "deviceName", device.getName(),
+                            "username", user.getUsername(),
+                            "connectionStart", savedLog.getConnectionStart())));
+
             logger.info("Connection initiated successfully. Log ID: {}, Device: {}", savedLog.getId(), deviceId);
 
+            outcome = "success";
             return ConnectionInitiateResponse.builder()
                     .connectionUrl(connectionUrl)
                     .connectionLogId(savedLog.getId())
@@ -142,12 +190,15 @@ public class ConnectionService {
                     .protocol(device.getProtocol().name())
                     .build();
 
-        } catch (BadRequestException | ResourceNotFoundException e) {
+        } catch (BadRequestException | ResourceNotFoundException | SessionLimitExceededException e) {
             // Re-throw known exceptions
+            outcome = e instanceof SessionLimitExceededException ? "limited" : "rejected";
             throw e;
         } catch (Exception e) {
             logger.error("Unexpected error initiating connection to device: {}", deviceId, e);
             throw new BadRequestException("Failed to initiate connection: " + e.getMessage());
+        } finally {
+            sample.stop(outcomeTimer("rdm.connections.initiate", outcome));
         }
     }
 
@@ -199,6 +250,8 @@ public class ConnectionService {
     public void endConnection(Integer connectionLogId, ConnectionLog.ConnectionStatus status) {
         logger.info("Ending connection log: {} with status: {}", connectionLogId, status);
 
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
         try {
             // Validate connection log ID
             if (connectionLogId == null || connectionLogId <= 0) {
@@ -245,18 +298,78 @@ public class ConnectionService {
                             "duration", connectionLog.getDuration() != null ? connectionLog.getDuration() : 0),
                     connectionLog.getIpAddress());
 
+            activeSessionRegistry.unregister(connectionLogId);
+            eventPublisher.publishEvent(LiveEvent.connection(LiveEvent.CONNECTION_ENDED,
+                    connectionLog.getUserId(), connectionLog.getDeviceId(),
+                    java.util.Map.of(
+                            "connectionLogId", connectionLogId,
+                            "deviceId", connectionLog.getDeviceId(),
+                            "status", status.name(),
+                            "duration", connectionLog.getDuration() != null ? connectionLog.getDuration() : 0)));
+
             logger.info("Connection ended. Log ID: {}, Duration: {} seconds, Status: {}",
                     connectionLogId, connectionLog.getDuration(), status);
+            outcome = "success";
 
         } catch (BadRequestException | ResourceNotFoundException e) {
             // Re-throw known exceptions
+            outcome = "rejected";
             throw e;
         } catch (Exception e) {
             logger.error("Unexpected error ending connection log: {}", connectionLogId, e);
             throw new BadRequestException("Failed to end connection: " + e.getMessage());
+        } finally {
+            sample.stop(outcomeTimer("rdm.connections.end", outcome));
+        }
+    }
+
+    /**
+     * Record a heartbeat for an open connection so it is not reaped
+     * 
+     * @param connectionLogId The connection log ID
+     */
+    public void heartbeat(Integer connectionLogId) {
+        Integer userId = permissionService.isAdmin() ? null : permissionService.getCurrentUserId();
+        if (!activeSessionRegistry.heartbeat(connectionLogId, userId)) {
+            // Also returned once a session has been reaped, telling the client it is gone
+            throw new ResourceNotFoundException("Active connection", "id", connectionLogId);
         }
     }
 
+    /**
+     * Get the state of a waitlist ticket; polling it keeps the ticket alive
+     * 
+     * @param ticketId The ticket ID
+     * @return WaitlistTicketDTO
+     */
+    public WaitlistTicketDTO getWaitlistTicket(String ticketId) {
+        return sessionLimiter.getTicket(ticketId, permissionService.getCurrentUserId());
+    }
+
+    /**
+     * Leave the waitlist, giving back the slot if the ticket was already granted
+     * 
+     * @param ticketId The ticket ID
+     */
+    public void cancelWaitlistTicket(String ticketId) {
+        sessionLimiter.cancelTicket(ticketId, permissionService.getCurrentUserId());
+    }
+
+    /**
+     * Get open connections: all of them for admins, otherwise the current user's
+     * 
+     * @return List of ActiveSessionDTO, newest first
+     */
+    public List<ActiveSessionDTO> getActiveSessions() {
+        Collection<ActiveSessionRegistry.Session> sessions = permissionService.isAdmin()
+                ? activeSessionRegistry.getSessions()
+                : activeSessionRegistry.getUserSessions(permissionService.getCurrentUserId());
+        return sessions.stream()
+                .sorted(Comparator.comparing(ActiveSessionRegistry.Session::getConnectionStart).reversed())
+                .map(ActiveSessionDTO::fromSession)
+                .toList();
+    }
+
     /**
      * Get connection logs for the current user
      * 
@@ -273,8 +386,7 @@ public class ConnectionService {
                 throw new BadRequestException("Page size cannot exceed 100");
             }
 
-            Page<ConnectionLog> logs = connectionLogRepository.findByUserIdOrderByConnectionStartDesc(userId, pageable);
-            return logs.map(ConnectionLogDTO::fromConnectionLog);
+            return connectionLogRepository.findUserConnections(userId, pageable);
         } catch (BadRequestException e) {
             throw e;
         } catch (Exception e) {
@@ -314,9 +426,69 @@ public class ConnectionService {
                 throw new BadRequestException("You do not have permission to view logs for this device");
             }
 
-            Page<ConnectionLog> logs = connectionLogRepository.findByDeviceIdOrderByConnectionStartDesc(deviceId,
-                    pageable);
-            return logs.map(ConnectionLogDTO::fromConnectionLog);
+            return connectionLogRepository.findDeviceConnections(deviceId, pageable);
+        } catch (BadRequestException | ResourceNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error getting device connection logs for device: {}", deviceId, e);
+            throw new BadRequestException("Failed to get device connection logs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get connection logs for the current user using keyset pagination
+     * 
+     * @param cursor Opaque cursor from the previous page, or null for the first page
+     * @param size   Page size
+     * @return CursorPage of ConnectionLogDTO
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ConnectionLogDTO> getConnectionLogs(String cursor, int size) {
+        try {
+            Integer userId = permissionService.getCurrentUserId();
+            LogCursor.validatePageSize(size);
+            LogCursor after = LogCursor.decode(cursor);
+
+            List<ConnectionLogDTO> logs = connectionLogRepository.findUserConnectionsBefore(
+                    userId, after.timestamp(), after.id(), PageRequest.of(0, size + 1));
+            return LogCursor.toPage(logs, size, ConnectionService::positionOf, Function.identity());
+        } catch (BadRequestException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error getting connection logs", e);
+            throw new BadRequestException("Failed to get connection logs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get connection logs for a specific device using keyset pagination
+     * 
+     * @param deviceId The device ID
+     * @param cursor   Opaque cursor from the previous page, or null for the first page
+     * @param size     Page size
+     * @return CursorPage of ConnectionLogDTO
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ConnectionLogDTO> getDeviceConnectionLogs(Integer deviceId, String cursor, int size) {
+        try {
+            if (deviceId == null || deviceId <= 0) {
+                throw new BadRequestException("Invalid device ID");
+            }
+            LogCursor.validatePageSize(size);
+            LogCursor after = LogCursor.decode(cursor);
+
+            deviceRepository.findByIdAndIsActiveTrue(deviceId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Device", "id", deviceId));
+
+            Integer userId = permissionService.getCurrentUserId();
+            if (!permissionService.isAdmin() && !permissionService.canViewDevice(userId, deviceId)) {
+                logger.warn("User {} attempted to view logs for device {} without permission", userId, deviceId);
+                throw new BadRequestException("You do not have permission to view logs for this device");
+            }
+
+            List<ConnectionLogDTO> logs = connectionLogRepository.findDeviceConnectionsBefore(
+                    deviceId, after.timestamp(), after.id(), PageRequest.of(0, size + 1));
+            return LogCursor.toPage(logs, size, ConnectionService::positionOf, Function.identity());
         } catch (BadRequestException | ResourceNotFoundException e) {
             throw e;
         } catch (Exception e) {
@@ -325,6 +497,10 @@ public class ConnectionService {
         }
     }
 
+    private static LogCursor positionOf(ConnectionLogDTO log) {
+        return new LogCursor(log.getConnectionStart(), log.getId());
+    }
+
     /**
      * Check if user has permission to connect to device
      * 
@@ -338,4 +514,11 @@ public class ConnectionService {
         }
         return permissionService.canViewDevice(userId, deviceId);
     }
+
+    private Timer outcomeTimer(String name, String outcome) {
+        return Timer.builder(name)
+                .description("Time spent in the connection service, excluding the transaction commit")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
 }
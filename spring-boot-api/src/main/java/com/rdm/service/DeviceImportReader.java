@@ -0,0 +1,250 @@
+package com.rdm.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rdm.dto.CreateDeviceDTO;
+import com.rdm.exception.BadRequestException;
+import com.rdm.model.Device;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads devices to import one row at a time, so the size of the upload does
+ * not affect memory use. Field-level problems are reported on the row; only
+ * input that cannot be read any further throws.
+ */
+abstract class DeviceImportReader implements Closeable {
+
+    /**
+     * @param errors problems found while reading the row; the device is null if it could not be read at all
+     */
+    record Row(int number, CreateDeviceDTO device, List<String> errors) {
+    }
+
+    protected int rowNumber;
+
+    static DeviceImportReader create(DeviceImportService.Format format, InputStream in, ObjectMapper objectMapper)
+            throws IOException {
+        return switch (format) {
+            case csv -> new Csv(in);
+            case json -> new Json(in, objectMapper);
+        };
+    }
+
+    /**
+     * @return the next row, or null at the end of the input
+     * @throws IOException if the input is malformed past the current row
+     */
+    abstract Row next() throws IOException;
+
+    /**
+     * CSV with a header row naming the columns: name, description, host, port,
+     * protocol, username, password, private_key and tags. Column order is free
+     * and unknown columns are ignored. Tags are either a JSON array, as written
+     * by the device export, or separated by semicolons.
+     */
+    private static final class Csv extends DeviceImportReader {
+
+        private final BufferedReader reader;
+        private final ObjectMapper tagMapper = new ObjectMapper();
+        private Map<String, Integer> header;
+
+        Csv(InputStream in) {
+            this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        @Override
+        Row next() throws IOException {
+            if (header == null) {
+                List<String> names = readRecord();
+                if (names == null) {
+                    return null;
+                }
+                header = new HashMap<>();
+                for (int i = 0; i < names.size(); i++) {
+                    header.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+                }
+                if (!header.containsKey("name") || !header.containsKey("host")) {
+                    throw new BadRequestException("CSV header must name at least the name and host columns");
+                }
+            }
+
+            List<String> fields;
+            do {
+                fields = readRecord();
+            } while (fields != null && fields.size() == 1 && fields.get(0).isBlank());
+            if (fields == null) {
+                return null;
+            }
+
+            List<String> errors = new ArrayList<>();
+            CreateDeviceDTO device = new CreateDeviceDTO();
+            device.setName(field(fields, "name"));
+            device.setDescription(field(fields, "description"));
+            device.setHost(field(fields, "host"));
+            device.setUsername(field(fields, "username"));
+            device.setPassword(field(fields, "password"));
+            device.setPrivateKey(field(fields, "private_key"));
+
+            String port = field(fields, "port");
+            if (port != null) {
+                try {
+                    device.setPort(Integer.parseInt(port.trim()));
+                } catch (NumberFormatException e) {
+                    errors.add("port: not a number: " + port);
+                }
+            }
+            String protocol = field(fields, "protocol");
+            if (protocol != null) {
+                try {
+                    device.setProtocol(Device.Protocol.valueOf(protocol.trim().toLowerCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    errors.add("protocol: must be one of rdp, vnc, ssh");
+                }
+            }
+            String tags = field(fields, "tags");
+            if (tags != null) {
+                try {
+                    device.setTags(parseTags(tags.trim()));
+                } catch (JsonProcessingException e) {
+                    errors.add("tags: not a JSON array of strings");
+                }
+            }
+            return new Row(++rowNumber, device, errors);
+        }
+
+        private String field(List<String> fields, String column) {
+            Integer index = header.get(column);
+            if (index == null || index >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(index);
+            return value.isEmpty() ? null : value;
+        }
+
+        private List<String> parseTags(String tags) throws JsonProcessingException {
+            if (tags.startsWith("[")) {
+                return List.of(tagMapper.readValue(tags, String[].class));
+            }
+            List<String> result = new ArrayList<>();
+            for (String tag : tags.split(";")) {
+                if (!tag.isBlank()) {
+                    result.add(tag.trim());
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Read one RFC 4180 record; quoted fields may contain separators, quotes
+         * and line breaks.
+         *
+         * @return the fields, or null at the end of the input
+         */
+        private List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field after row " + rowNumber);
+                    }
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.isEmpty()) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == '\r' || c == -1) {
+                    if (c == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') {
+                            reader.reset();
+                        }
+                    }
+                    fields.add(field.toString());
+                    return fields;
+                } else {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * A JSON array of objects with the fields of {@link CreateDeviceDTO}. Each
+     * element is read as a tree and bound separately, so a bad value only
+     * fails its own row.
+     */
+    private static final class Json extends DeviceImportReader {
+
+        private final JsonParser parser;
+        private final ObjectMapper objectMapper;
+
+        Json(InputStream in, ObjectMapper objectMapper) throws IOException {
+            this.objectMapper = objectMapper;
+            this.parser = objectMapper.getFactory().createParser(in);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new BadRequestException("JSON import must be an array of devices");
+            }
+        }
+
+        @Override
+        Row next() throws IOException {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) {
+                return null;
+            }
+            int number = ++rowNumber;
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                return new Row(number, null, List.of("row is not a JSON object"));
+            }
+            JsonNode node = objectMapper.readTree(parser);
+            try {
+                return new Row(number, objectMapper.treeToValue(node, CreateDeviceDTO.class), new ArrayList<>());
+            } catch (JsonProcessingException e) {
+                return new Row(number, null, List.of(e.getOriginalMessage()));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+}
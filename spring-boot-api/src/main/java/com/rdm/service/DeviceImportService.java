@@ -0,0 +1,279 @@
+package com.rdm.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rdm.dto.CreateDeviceDTO;
+import com.rdm.dto.DeviceDTO;
+import com.rdm.dto.DeviceImportResultDTO;
+import com.rdm.dto.DeviceImportRowDTO;
+import com.rdm.exception.BadRequestException;
+import com.rdm.model.AuditLog;
+import com.rdm.model.Device;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Creates devices in bulk from a CSV or JSON upload.
+ *
+ * The upload is read row by row and written in batches, each in its own
+ * transaction: device IDs are taken from the sequence up front, the devices
+ * are inserted with a single JDBC batch, and the batch is queued in the
+ * {@link GuacamoleOutbox}, which creates the Guacamole connections in the
+ * background. Each batch leaves one summarizing audit record. A batch that fails is
+ * rolled back and reported without stopping the rest of the import.
+ */
+@Service
+public class DeviceImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceImportService.class);
+
+    public enum Format {
+        csv, json
+    }
+
+    private static final String ALLOCATE_IDS_SQL =
+            "SELECT nextval(pg_get_serial_sequence('app.devices', 'id')) FROM generate_series(1, ?)";
+
+    private static final String INSERT_SQL = "INSERT INTO app.devices (id, name, description, host, port, protocol, "
+            + "username, password_encrypted, private_key, guacamole_conn_id, status, tags, is_active, "
+            + "created_at, updated_at, created_by) "
+            + "VALUES (?, ?, ?, ?, ?, CAST(? AS app.device_protocol), ?, ?, ?, ?, CAST(? AS app.device_status), "
+            + "CAST(? AS jsonb), TRUE, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final GuacamoleOutbox guacamoleOutbox;
+    private final PermissionService permissionService;
+    private final AuditService auditService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final EntityCacheEvictor entityCacheEvictor;
+    private final ListingVersions listingVersions;
+    private final DevicePasswordCodec passwordCodec;
+
+    @Value("${rdm.devices.import.batch-size:500}")
+    private int batchSize;
+
+    public DeviceImportService(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               GuacamoleOutbox guacamoleOutbox,
+                               PermissionService permissionService,
+                               AuditService auditService,
+                               ApplicationEventPublisher eventPublisher,
+                               ObjectMapper objectMapper,
+                               Validator validator,
+                               EntityCacheEvictor entityCacheEvictor,
+                               ListingVersions listingVersions,
+                               DevicePasswordCodec passwordCodec) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.guacamoleOutbox = guacamoleOutbox;
+        this.permissionService = permissionService;
+        this.auditService = auditService;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.entityCacheEvictor = entityCacheEvictor;
+        this.listingVersions = listingVersions;
+        this.passwordCodec = passwordCodec;
+    }
+
+    /**
+     * Format named by the format parameter, or else implied by the request's content type.
+     */
+    public static Format parseFormat(String format, String contentType) {
+        if (format == null) {
+            return contentType != null && contentType.toLowerCase(Locale.ROOT).contains("json")
+                    ? Format.json
+                    : Format.csv;
+        }
+        try {
+            return Format.valueOf(format.toLowerCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unsupported import format: " + format);
+        }
+    }
+
+    /**
+     * Import every row of the upload. Invalid rows are skipped and reported;
+     * valid rows are created even if others fail.
+     *
+     * @return one result per row read, in input order
+     */
+    public DeviceImportResultDTO importDevices(InputStream in, Format format, String ipAddress)
+            throws IOException {
+        if (!permissionService.isAdmin()) {
+            throw new AccessDeniedException("Only admins can import devices");
+        }
+        Integer userId = permissionService.getCurrentUserId();
+
+        List<DeviceImportRowDTO> results = new ArrayList<>();
+        List<Pending> batch = new ArrayList<>(batchSize);
+        int batches = 0;
+        String error = null;
+
+        try (DeviceImportReader reader = DeviceImportReader.create(format, in, objectMapper)) {
+            DeviceImportReader.Row row;
+            while ((row = reader.next()) != null) {
+                DeviceImportRowDTO result = validate(row);
+                results.add(result);
+                if (result.getErrors().isEmpty()) {
+                    batch.add(new Pending(row.device(), result));
+                    if (batch.size() == batchSize) {
+                        writeBatch(batch, ++batches, userId, ipAddress);
+                        batch.clear();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Keep what was read so far; the report tells the client where the input broke off
+            error = "Could not read input after row " + results.size() + ": " + e.getMessage();
+            logger.warn("Device import stopped after {} rows", results.size(), e);
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch, ++batches, userId, ipAddress);
+        }
+
+        int created = (int) results.stream().filter(r -> "created".equals(r.getStatus())).count();
+        logger.info("Imported {} of {} devices in {} batches", created, results.size(), batches);
+        return DeviceImportResultDTO.builder()
+                .rows(results.size())
+                .created(created)
+                .failed(results.size() - created)
+                .batches(batches)
+                .error(error)
+                .results(results)
+                .build();
+    }
+
+    private DeviceImportRowDTO validate(DeviceImportReader.Row row) {
+        List<String> errors = new ArrayList<>(row.errors());
+        CreateDeviceDTO device = row.device();
+        if (device != null) {
+            for (ConstraintViolation<CreateDeviceDTO> violation : validator.validate(device)) {
+                String property = violation.getPropertyPath().toString();
+                // A field the reader could not parse is left null; don't also report it as missing
+                if (errors.stream().noneMatch(e -> e.startsWith(property + ":"))) {
+                    errors.add(property + ": " + violation.getMessage());
+                }
+            }
+            if (device.getPort() != null && device.getPort() > 65535) {
+                errors.add("port: Port must be at most 65535");
+            }
+        }
+        return DeviceImportRowDTO.builder()
+                .row(row.number())
+                .status(errors.isEmpty() ? "pending" : "invalid")
+                .name(device != null ? device.getName() : null)
+                .errors(errors)
+                .build();
+    }
+
+    private void writeBatch(List<Pending> batch, int batchNumber, Integer userId, String ipAddress) {
+        try {
+            List<Device> devices = transactionTemplate.execute(status -> insertBatch(batch, userId));
+            entityCacheEvictor.evictDeviceQueries();
+            listingVersions.devicesChanged();
+            for (int i = 0; i < batch.size(); i++) {
+                DeviceImportRowDTO result = batch.get(i).result();
+                result.setStatus("created");
+                result.setDeviceId(devices.get(i).getId());
+            }
+
+            auditService.logAction(
+                    AuditLog.AuditAction.create,
+                    "device",
+                    null,
+                    Map.of("operation", "import", "batch", batchNumber, "devices", devices.size(),
+                            "firstDeviceId", devices.get(0).getId(),
+                            "lastDeviceId", devices.get(devices.size() - 1).getId()),
+                    ipAddress);
+            for (Device device : devices) {
+                eventPublisher.publishEvent(LiveEvent.device(LiveEvent.DEVICE_CREATED, DeviceDTO.fromDevice(device)));
+            }
+        } catch (RuntimeException e) {
+            logger.error("Device import batch {} of {} rows failed", batchNumber, batch.size(), e);
+            for (Pending pending : batch) {
+                pending.result().setStatus("failed");
+                pending.result().getErrors().add("batch " + batchNumber + " could not be written: " + e.getMessage());
+            }
+        }
+    }
+
+    private List<Device> insertBatch(List<Pending> batch, Integer userId) {
+        List<Integer> ids = jdbcTemplate.queryForList(ALLOCATE_IDS_SQL, Integer.class, batch.size());
+        LocalDateTime now = LocalDateTime.now();
+        List<Device> devices = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            CreateDeviceDTO dto = batch.get(i).device();
+            devices.add(Device.builder()
+                    .id(ids.get(i))
+                    .name(dto.getName())
+                    .description(dto.getDescription())
+                    .host(dto.getHost())
+                    .port(dto.getPort())
+                    .protocol(dto.getProtocol())
+                    .username(dto.getUsername())
+                    .passwordEncrypted(dto.getPassword() != null ? passwordCodec.encode(dto.getPassword()) : null)
+                    .privateKey(dto.getPrivateKey())
+                    .tags(dto.getTags() != null ? dto.getTags() : List.of())
+                    .status(Device.DeviceStatus.unknown)
+                    .isActive(true)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .createdBy(userId)
+                    .build());
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, devices, devices.size(), (ps, device) -> {
+            ps.setInt(1, device.getId());
+            ps.setString(2, device.getName());
+            ps.setString(3, device.getDescription());
+            ps.setString(4, device.getHost());
+            ps.setInt(5, device.getPort());
+            ps.setString(6, device.getProtocol().name());
+            ps.setString(7, device.getUsername());
+            ps.setString(8, device.getPasswordEncrypted());
+            ps.setString(9, device.getPrivateKey());
+            ps.setString(10, device.getGuacamoleConnId());
+            ps.setString(11, device.getStatus().name());
+            ps.setString(12, toJson(device.getTags()));
+            ps.setTimestamp(13, Timestamp.valueOf(device.getCreatedAt()));
+            ps.setTimestamp(14, Timestamp.valueOf(device.getUpdatedAt()));
+            ps.setObject(15, device.getCreatedBy(), Types.INTEGER);
+        });
+        guacamoleOutbox.enqueue(ids);
+        return devices;
+    }
+
+    private String toJson(List<String> tags) {
+        try {
+            return objectMapper.writeValueAsString(tags);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize device tags", e);
+        }
+    }
+
+    private record Pending(CreateDeviceDTO device, DeviceImportRowDTO result) {
+    }
+}
@@ -0,0 +1,24 @@
+package com.rdm.service;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Converts device passwords between their plain form and the form stored in
+ * devices.password_encrypted. Every path that writes or reads that column goes
+ * through here, so a real cipher only has to be added in one place.
+ */
+@Component
+public class DevicePasswordCodec {
+
+    // TODO: Implement proper encryption for device passwords
+    public String encode(String password) {
+        // For now, store as plaintext (NOT SECURE - implement proper encryption)
+        // In production, use AES encryption with a secure key
+        return password;
+    }
+
+    public String decode(String encodedPassword) {
+        // For now, return as-is
+        return encodedPassword;
+    }
+}
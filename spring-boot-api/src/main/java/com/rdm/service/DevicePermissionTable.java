@@ -0,0 +1,66 @@
+package com.rdm.service;
+
+import java.util.Map;
+
+/**
+ * Immutable open-addressing map from device id to permission rank, used as the
+ * per-user snapshot in {@link PermissionIndex}. Device ids are positive, so 0
+ * marks an empty slot.
+ */
+final class DevicePermissionTable {
+
+    static final DevicePermissionTable EMPTY = new DevicePermissionTable(new int[1], new byte[1]);
+
+    private final int[] keys;
+    private final byte[] values;
+    private final int mask;
+
+    private DevicePermissionTable(int[] keys, byte[] values) {
+        this.keys = keys;
+        this.values = values;
+        this.mask = keys.length - 1;
+    }
+
+    static DevicePermissionTable of(Map<Integer, Byte> ranks) {
+        if (ranks.isEmpty()) {
+            return EMPTY;
+        }
+        int capacity = Integer.highestOneBit(Math.max(2, ranks.size() * 2 - 1)) << 1;
+        int[] keys = new int[capacity];
+        byte[] values = new byte[capacity];
+        int mask = capacity - 1;
+        for (Map.Entry<Integer, Byte> entry : ranks.entrySet()) {
+            int key = entry.getKey();
+            int slot = mix(key) & mask;
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = entry.getValue();
+        }
+        return new DevicePermissionTable(keys, values);
+    }
+
+    /**
+     * @return the permission rank for the device, or 0 if there is no grant
+     */
+    byte get(int deviceId) {
+        if (deviceId == 0) {
+            return 0;
+        }
+        int slot = mix(deviceId) & mask;
+        int key;
+        while ((key = keys[slot]) != 0) {
+            if (key == deviceId) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
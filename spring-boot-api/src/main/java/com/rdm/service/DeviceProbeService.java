@@ -0,0 +1,272 @@
+package com.rdm.service;
+
+import com.rdm.config.VirtualThreads;
+import com.rdm.model.Device;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically TCP-connects to every active device and records whether it is
+ * reachable in {@link Device#getStatus()}.
+ *
+ * Rounds run on a single scheduler thread with a jittered delay between them;
+ * the connects themselves are multiplexed by {@link TcpConnectProber} with
+ * bounded concurrency. Host names are resolved up front by {@link HostResolver}
+ * on its own pool; a host that does not resolve in time counts as unreachable.
+ * Only status transitions are written back, in JDBC batches.
+ */
+@Service
+public class DeviceProbeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceProbeService.class);
+
+    private static final String UPDATE_STATUS_SQL = "UPDATE app.devices SET status = CAST(? AS app.device_status) "
+            + "WHERE id = ? AND status IS DISTINCT FROM CAST(? AS app.device_status)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Environment environment;
+    private final EntityCacheEvictor entityCacheEvictor;
+    private final ListingVersions listingVersions;
+    private final Timer reachableTimer;
+    private final Timer unreachableTimer;
+    private final Timer roundTimer;
+    private final Counter transitionCounter;
+
+    @Value("${rdm.probe.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rdm.probe.interval:PT60S}")
+    private Duration interval;
+
+    @Value("${rdm.probe.jitter:0.2}")
+    private double jitter;
+
+    @Value("${rdm.probe.connect-timeout:PT3S}")
+    private Duration connectTimeout;
+
+    @Value("${rdm.probe.resolve-timeout:PT2S}")
+    private Duration resolveTimeout;
+
+    @Value("${rdm.probe.resolver-threads:16}")
+    private int resolverThreads;
+
+    @Value("${rdm.probe.dns-cache-ttl:PT5M}")
+    private Duration dnsCacheTtl;
+
+    @Value("${rdm.probe.max-concurrency:256}")
+    private int maxConcurrency;
+
+    @Value("${rdm.probe.batch-size:500}")
+    private int batchSize;
+
+    private ScheduledExecutorService scheduler;
+    private TcpConnectProber prober;
+    private HostResolver resolver;
+
+    public DeviceProbeService(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher,
+                              MeterRegistry meterRegistry, Environment environment,
+                              EntityCacheEvictor entityCacheEvictor, ListingVersions listingVersions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.environment = environment;
+        this.entityCacheEvictor = entityCacheEvictor;
+        this.listingVersions = listingVersions;
+        this.reachableTimer = probeTimer(meterRegistry, "reachable");
+        this.unreachableTimer = probeTimer(meterRegistry, "unreachable");
+        this.roundTimer = Timer.builder("rdm.device.probe.round")
+                .description("Time to probe every active device once")
+                .register(meterRegistry);
+        this.transitionCounter = Counter.builder("rdm.device.probe.transitions")
+                .description("Device status changes detected by the prober")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!enabled) {
+            logger.info("Device reachability probing is disabled");
+            return;
+        }
+        // Queue room for one round's worth of distinct hosts; more than that only happens with DNS stalled
+        resolver = new HostResolver(resolverThreads, 10_000, dnsCacheTtl.toNanos(),
+                new CustomizableThreadFactory("device-probe-dns-"));
+        prober = new TcpConnectProber(maxConcurrency, new CustomizableThreadFactory("device-probe-io-"));
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                VirtualThreads.threadFactory(environment, "device-probe-"));
+        scheduler.schedule(this::runRoundAndReschedule, nextDelayMillis(), TimeUnit.MILLISECONDS);
+        logger.info("Device reachability probing every {} (jitter {}), timeout {}, concurrency {}",
+                interval, jitter, connectTimeout, maxConcurrency);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (prober != null) {
+            prober.close();
+        }
+        if (resolver != null) {
+            resolver.close();
+        }
+    }
+
+    private void runRoundAndReschedule() {
+        try {
+            roundTimer.record(this::probeAll);
+        } catch (Exception e) {
+            logger.error("Device probe round failed", e);
+        } finally {
+            if (!scheduler.isShutdown()) {
+                scheduler.schedule(this::runRoundAndReschedule, nextDelayMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Probe every active device once and write back status transitions.
+     */
+    void probeAll() {
+        List<ProbeTarget> targets = jdbcTemplate.query(
+                "SELECT id, host, port, status FROM app.devices WHERE is_active = TRUE",
+                (rs, rowNum) -> new ProbeTarget(rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getString(4)));
+        // Spread consecutive connects across hosts instead of walking them in id order
+        Collections.shuffle(targets);
+
+        long timeoutNanos = connectTimeout.toNanos();
+        Queue<StatusChange> changes = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<?>> inFlight = new ArrayList<>(targets.size());
+
+        try {
+            Map<String, InetAddress> addresses = resolveHosts(targets);
+            for (ProbeTarget target : targets) {
+                InetAddress resolved = addresses.get(target.host());
+                // The prober reports an unresolved address as unreachable without connecting
+                InetSocketAddress address = resolved != null
+                        ? new InetSocketAddress(resolved, target.port())
+                        : InetSocketAddress.createUnresolved(target.host(), target.port());
+                inFlight.add(prober.probe(address, timeoutNanos).thenAccept(result -> {
+                    (result.reachable() ? reachableTimer : unreachableTimer)
+                            .record(result.latencyNanos(), TimeUnit.NANOSECONDS);
+                    Device.DeviceStatus status = result.reachable()
+                            ? Device.DeviceStatus.online
+                            : Device.DeviceStatus.offline;
+                    if (!status.name().equals(target.status())) {
+                        changes.add(new StatusChange(target.id(), status));
+                    }
+                }));
+            }
+            CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                    .get(timeoutNanos + TimeUnit.SECONDS.toNanos(30), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            logger.warn("Device probe round did not complete cleanly: {}", e.getMessage());
+        }
+
+        applyStatusChanges(new ArrayList<>(changes));
+        logger.debug("Probed {} devices, {} status changes", targets.size(), changes.size());
+    }
+
+    /**
+     * Resolve the distinct hosts of the targets. Takes at most the resolve timeout;
+     * hosts that did not resolve by then are missing from the result.
+     */
+    private Map<String, InetAddress> resolveHosts(List<ProbeTarget> targets) throws InterruptedException {
+        resolver.evictExpired();
+        long timeoutNanos = resolveTimeout.toNanos();
+        Map<String, CompletableFuture<InetAddress>> lookups = new HashMap<>();
+        for (ProbeTarget target : targets) {
+            lookups.computeIfAbsent(target.host(), host -> resolver.resolve(host, timeoutNanos));
+        }
+
+        Map<String, InetAddress> addresses = new HashMap<>(lookups.size());
+        int unresolved = 0;
+        for (Map.Entry<String, CompletableFuture<InetAddress>> lookup : lookups.entrySet()) {
+            InetAddress address;
+            try {
+                address = lookup.getValue().get();
+            } catch (ExecutionException e) {
+                address = null;
+            }
+            if (address != null) {
+                addresses.put(lookup.getKey(), address);
+            } else {
+                unresolved++;
+            }
+        }
+        if (unresolved > 0) {
+            logger.debug("{} of {} device hosts did not resolve within {}", unresolved, lookups.size(), resolveTimeout);
+        }
+        return addresses;
+    }
+
+    private void applyStatusChanges(List<StatusChange> changes) {
+        for (int from = 0; from < changes.size(); from += batchSize) {
+            List<StatusChange> batch = changes.subList(from, Math.min(from + batchSize, changes.size()));
+            jdbcTemplate.batchUpdate(UPDATE_STATUS_SQL, batch, batch.size(), (ps, change) -> {
+                ps.setString(1, change.status().name());
+                ps.setInt(2, change.deviceId());
+                ps.setString(3, change.status().name());
+            });
+            entityCacheEvictor.evictDevices(batch.stream().map(StatusChange::deviceId).toList());
+            listingVersions.devicesChanged();
+        }
+        transitionCounter.increment(changes.size());
+
+        for (StatusChange change : changes) {
+            eventPublisher.publishEvent(LiveEvent.deviceStatus(change.deviceId(), change.status().name()));
+        }
+    }
+
+    private long nextDelayMillis() {
+        double factor = 1 + jitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+        return Math.max(1000, (long) (interval.toMillis() * factor));
+    }
+
+    private static Timer probeTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("rdm.device.probe.latency")
+                .description("TCP connect latency of device reachability probes")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private record ProbeTarget(int id, String host, int port, String status) {
+    }
+
+    private record StatusChange(int deviceId, Device.DeviceStatus status) {
+    }
+}
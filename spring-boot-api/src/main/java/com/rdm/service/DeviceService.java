@@ -1,18 +1,27 @@
 package com.rdm.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rdm.dto.CreateDeviceDTO;
 import com.rdm.dto.DeviceDTO;
+import com.rdm.dto.ProvisionResultDTO;
 import com.rdm.dto.UpdateDeviceDTO;
+import com.rdm.exception.BadRequestException;
 import com.rdm.exception.ResourceNotFoundException;
 import com.rdm.model.Device;
 import com.rdm.model.User;
 import com.rdm.repository.DeviceRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class DeviceService {
@@ -21,53 +30,123 @@ public class DeviceService {
     private final PermissionService permissionService;
     private final AuditService auditService;
     private final GuacamoleService guacamoleService;
+    private final GuacamoleOutbox guacamoleOutbox;
+    private final ListingVersions listingVersions;
+    private final DevicePasswordCodec passwordCodec;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "id", "id",
+            "name", "name",
+            "host", "host",
+            "port", "port",
+            "protocol", "protocol",
+            "status", "status",
+            "createdAt", "created_at",
+            "updatedAt", "updated_at");
 
     public DeviceService(DeviceRepository deviceRepository,
             PermissionService permissionService,
             AuditService auditService,
-            GuacamoleService guacamoleService) {
+            GuacamoleService guacamoleService,
+            GuacamoleOutbox guacamoleOutbox,
+            ListingVersions listingVersions,
+            DevicePasswordCodec passwordCodec,
+            ApplicationEventPublisher eventPublisher,
+            ObjectMapper objectMapper) {
         this.deviceRepository = deviceRepository;
         this.permissionService = permissionService;
         this.auditService = auditService;
         this.guacamoleService = guacamoleService;
+        this.guacamoleOutbox = guacamoleOutbox;
+        this.listingVersions = listingVersions;
+        this.passwordCodec = passwordCodec;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
     }
 
-    // TODO: Implement proper encryption for device passwords
-    private String encryptPassword(String password) {
-        // For now, store as plaintext (NOT SECURE - implement proper encryption)
-        // In production, use AES encryption with a secure key
-        return password;
-    }
-
-    private String decryptPassword(String encryptedPassword) {
-        // For now, return as-is
-        return encryptedPassword;
-    }
-
+    /**
+     * Search active devices. {@code name} and {@code host} match substrings of those
+     * fields, {@code q} matches a substring of name, host or description, and every
+     * tag in {@code tags} must be present on the device. All filters are optional.
+     */
     @Transactional(readOnly = true)
-    public Page<DeviceDTO> getAllDevices(Pageable pageable, String name, Device.Protocol protocol,
-            Device.DeviceStatus status) {
+    public Page<DeviceDTO> getAllDevices(Pageable pageable, String name, String q, String host,
+            Device.Protocol protocol, Device.DeviceStatus status, List<String> tags) {
+        Pageable page = toColumnSort(pageable);
+        String protocolName = protocol != null ? protocol.name() : null;
+        String statusName = status != null ? status.name() : null;
+        String tagsJson = toTagsJson(tags);
         Page<Device> devices;
-        Integer userId = permissionService.getCurrentUserId();
 
         if (permissionService.isAdmin()) {
             // Admin can see all devices
-            if (name != null || protocol != null || status != null) {
-                devices = deviceRepository.searchDevices(name, protocol, status, pageable);
-            } else {
-                devices = deviceRepository.findByIsActiveTrue(pageable);
-            }
+            devices = deviceRepository.searchDevices(containsPattern(name), containsPattern(host),
+                    containsPattern(q), protocolName, statusName, tagsJson, page);
         } else {
-            // Non-admin users can only see devices they have access to
-            // For now, return all active devices - filtering by permissions will be done in
-            // Phase 3
-            // TODO: Implement proper permission filtering for device list
-            devices = deviceRepository.findByIsActiveTrue(pageable);
+            // Non-admin users can only see devices they have a direct or group grant on
+            devices = deviceRepository.findVisibleDevices(permissionService.getCurrentUserId(),
+                    containsPattern(name), containsPattern(host), containsPattern(q),
+                    protocolName, statusName, tagsJson, page);
         }
 
         return devices.map(DeviceDTO::fromDevice);
     }
 
+    /**
+     * ILIKE pattern matching the value anywhere, with LIKE wildcards in the value escaped.
+     * Blank values disable the filter.
+     */
+    private static String containsPattern(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String escaped = value.trim()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+
+    private String toTagsJson(List<String> tags) {
+        if (tags == null) {
+            return null;
+        }
+        List<String> wanted = tags.stream()
+                .filter(tag -> tag != null && !tag.isBlank())
+                .map(String::trim)
+                .distinct()
+                .toList();
+        if (wanted.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(wanted);
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Invalid tags filter");
+        }
+    }
+
+    /**
+     * The search queries are native SQL, so sort properties are translated to columns
+     * here. Anything outside this list is rejected rather than passed into ORDER BY.
+     */
+    private static Pageable toColumnSort(Pageable pageable) {
+        if (pageable.getSort().isUnsorted()) {
+            return pageable;
+        }
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Sort.Order order : pageable.getSort()) {
+            String column = SORT_COLUMNS.get(order.getProperty());
+            if (column == null) {
+                throw new BadRequestException("Cannot sort devices by '" + order.getProperty() + "'");
+            }
+            orders.add(new Sort.Order(order.getDirection(), column));
+        }
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(orders));
+    }
+
     @Transactional(readOnly = true)
     public DeviceDTO getDeviceById(Integer id) {
         Device device = deviceRepository.findByIdAndIsActiveTrue(id)
@@ -95,7 +174,7 @@ public class DeviceService {
                 .protocol(createDeviceDTO.getProtocol())
                 .username(createDeviceDTO.getUsername())
                 .passwordEncrypted(
-                        createDeviceDTO.getPassword() != null ? encryptPassword(createDeviceDTO.getPassword()) : null)
+                        createDeviceDTO.getPassword() != null ? passwordCodec.encode(createDeviceDTO.getPassword()) : null)
                 .privateKey(createDeviceDTO.getPrivateKey())
                 .tags(createDeviceDTO.getTags() != null ? createDeviceDTO.getTags() : List.of())
                 .status(Device.DeviceStatus.unknown)
@@ -104,17 +183,10 @@ public class DeviceService {
                 .build();
 
         Device savedDevice = deviceRepository.save(device);
+        listingVersions.devicesChanged();
 
-        // Create Guacamole connection
-        try {
-            String guacamoleConnId = guacamoleService.createGuacamoleConnection(savedDevice);
-            savedDevice.setGuacamoleConnId(guacamoleConnId);
-            savedDevice = deviceRepository.save(savedDevice);
-        } catch (Exception e) {
-            // Log error but don't fail device creation
-            org.slf4j.LoggerFactory.getLogger(DeviceService.class)
-                    .error("Failed to create Guacamole connection for device: {}", savedDevice.getName(), e);
-        }
+        // The Guacamole connection is created in the background once this commits
+        guacamoleOutbox.enqueue(savedDevice.getId());
 
         auditService.logAction(
                 com.rdm.model.AuditLog.AuditAction.create,
@@ -123,7 +195,9 @@ public class DeviceService {
                 java.util.Map.of("name", savedDevice.getName(), "host", savedDevice.getHost()),
                 ipAddress);
 
-        return DeviceDTO.fromDevice(savedDevice);
+        DeviceDTO deviceDTO = DeviceDTO.fromDevice(savedDevice);
+        eventPublisher.publishEvent(LiveEvent.device(LiveEvent.DEVICE_CREATED, deviceDTO));
+        return deviceDTO;
     }
 
     @Transactional
@@ -148,7 +222,7 @@ public class DeviceService {
         if (updateDeviceDTO.getUsername() != null)
             device.setUsername(updateDeviceDTO.getUsername());
         if (updateDeviceDTO.getPassword() != null) {
-            device.setPasswordEncrypted(encryptPassword(updateDeviceDTO.getPassword()));
+            device.setPasswordEncrypted(passwordCodec.encode(updateDeviceDTO.getPassword()));
         }
         if (updateDeviceDTO.getPrivateKey() != null)
             device.setPrivateKey(updateDeviceDTO.getPrivateKey());
@@ -158,21 +232,10 @@ public class DeviceService {
             device.setIsActive(updateDeviceDTO.getIsActive());
 
         Device updatedDevice = deviceRepository.save(device);
+        listingVersions.devicesChanged();
 
-        // Update Guacamole connection if it exists, or create if it doesn't
-        try {
-            if (updatedDevice.getGuacamoleConnId() != null && !updatedDevice.getGuacamoleConnId().isEmpty()) {
-                guacamoleService.updateGuacamoleConnection(updatedDevice);
-            } else {
-                String guacamoleConnId = guacamoleService.createGuacamoleConnection(updatedDevice);
-                updatedDevice.setGuacamoleConnId(guacamoleConnId);
-                updatedDevice = deviceRepository.save(updatedDevice);
-            }
-        } catch (Exception e) {
-            // Log error but don't fail device update
-            org.slf4j.LoggerFactory.getLogger(DeviceService.class)
-                    .error("Failed to update Guacamole connection for device: {}", updatedDevice.getName(), e);
-        }
+        // Brought over to the Guacamole connection in the background, or the connection deleted if deactivated
+        guacamoleOutbox.enqueue(updatedDevice.getId());
 
         auditService.logAction(
                 com.rdm.model.AuditLog.AuditAction.update,
@@ -181,7 +244,59 @@ public class DeviceService {
                 java.util.Map.of("name", updatedDevice.getName()),
                 ipAddress);
 
-        return DeviceDTO.fromDevice(updatedDevice);
+        DeviceDTO deviceDTO = DeviceDTO.fromDevice(updatedDevice);
+        eventPublisher.publishEvent(updatedDevice.getIsActive()
+                ? LiveEvent.device(LiveEvent.DEVICE_UPDATED, deviceDTO)
+                : LiveEvent.deviceDeleted(id));
+        return deviceDTO;
+    }
+
+    /**
+     * Create or update the Guacamole connections of the given devices, or of
+     * every active device when no IDs are given, in one bulk operation. Runs
+     * inline rather than through the outbox; the devices are locked so the
+     * outbox dispatcher cannot create connections for them at the same time.
+     */
+    @Transactional
+    public ProvisionResultDTO provisionDevices(List<Integer> deviceIds, String ipAddress) {
+        if (!permissionService.isAdmin()) {
+            throw new org.springframework.security.access.AccessDeniedException("Only admins can provision devices");
+        }
+
+        List<Device> devices = deviceIds == null || deviceIds.isEmpty()
+                ? deviceRepository.findActiveForUpdate()
+                : deviceRepository.findAllByIdForUpdate(deviceIds).stream().filter(Device::getIsActive).toList();
+
+        GuacamoleService.ProvisionResult result = guacamoleService.provisionConnections(devices);
+
+        List<Device> changed = new ArrayList<>();
+        for (Device device : devices) {
+            String guacamoleConnId = result.connectionIds().get(device.getId());
+            if (guacamoleConnId != null && !guacamoleConnId.equals(device.getGuacamoleConnId())) {
+                device.setGuacamoleConnId(guacamoleConnId);
+                changed.add(device);
+            }
+        }
+        deviceRepository.saveAll(changed);
+        if (!changed.isEmpty()) {
+            listingVersions.devicesChanged();
+        }
+
+        auditService.logAction(
+                com.rdm.model.AuditLog.AuditAction.update,
+                "device",
+                null,
+                java.util.Map.of("operation", "provision", "devices", devices.size(),
+                        "created", result.created(), "updated", result.updated()),
+                ipAddress);
+
+        return ProvisionResultDTO.builder()
+                .devices(devices.size())
+                .created(result.created())
+                .updated(result.updated())
+                .parametersWritten(result.parametersWritten())
+                .parametersDeleted(result.parametersDeleted())
+                .build();
     }
 
     @Transactional
@@ -193,19 +308,12 @@ public class DeviceService {
         Device device = deviceRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Device", "id", id));
 
-        // Delete Guacamole connection if it exists
-        if (device.getGuacamoleConnId() != null && !device.getGuacamoleConnId().isEmpty()) {
-            try {
-                guacamoleService.deleteGuacamoleConnection(device.getGuacamoleConnId());
-            } catch (Exception e) {
-                // Log error but continue with device deletion
-                org.slf4j.LoggerFactory.getLogger(DeviceService.class)
-                        .error("Failed to delete Guacamole connection for device: {}", device.getName(), e);
-            }
-        }
-
         device.setIsActive(false);
         deviceRepository.save(device);
+        listingVersions.devicesChanged();
+
+        // The Guacamole connection is deleted in the background once this commits
+        guacamoleOutbox.enqueue(id);
 
         auditService.logAction(
                 com.rdm.model.AuditLog.AuditAction.delete,
@@ -213,5 +321,7 @@ public class DeviceService {
                 id,
                 java.util.Map.of("name", device.getName()),
                 ipAddress);
+
+        eventPublisher.publishEvent(LiveEvent.deviceDeleted(id));
     }
 }
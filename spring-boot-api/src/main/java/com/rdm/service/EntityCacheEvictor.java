@@ -0,0 +1,60 @@
+package com.rdm.service;
+
+import com.rdm.model.Device;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+
+/**
+ * Keeps the Hibernate second-level cache in step with rows written through plain
+ * JDBC, which Hibernate never sees. Call after the writing transaction commits;
+ * writes through repositories are invalidated by Hibernate itself.
+ */
+@Component
+public class EntityCacheEvictor {
+
+    private final Cache cache;
+
+    public EntityCacheEvictor(EntityManagerFactory entityManagerFactory) {
+        this.cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    /**
+     * Drop cached state of devices updated outside Hibernate.
+     */
+    public void evictDevices(Collection<Integer> deviceIds) {
+        for (Integer deviceId : deviceIds) {
+            cache.evictEntityData(Device.class, deviceId);
+        }
+    }
+
+    /**
+     * Same as {@link #evictDevices}, once the current transaction has committed,
+     * so a concurrent reader cannot put the old row back in between.
+     */
+    public void evictDevicesAfterCommit(Collection<Integer> deviceIds) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictDevices(deviceIds);
+                }
+            });
+        } else {
+            evictDevices(deviceIds);
+        }
+    }
+
+    /**
+     * Drop cached query results after devices were inserted outside Hibernate,
+     * so an earlier "not found" for a new id is not served again.
+     */
+    public void evictDeviceQueries() {
+        cache.evictDefaultQueryRegion();
+    }
+}
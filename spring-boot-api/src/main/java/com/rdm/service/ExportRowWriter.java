@@ -0,0 +1,142 @@
+package com.rdm.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes export rows one at a time. Implementations buffer only the current
+ * row, so output size does not affect memory use.
+ */
+abstract class ExportRowWriter implements Closeable {
+
+    enum ColumnType {
+        TEXT, NUMBER, TIMESTAMP, JSON
+    }
+
+    record Column(String name, ColumnType type) {
+    }
+
+    protected final List<Column> columns;
+
+    protected ExportRowWriter(List<Column> columns) {
+        this.columns = columns;
+    }
+
+    static ExportRowWriter create(ExportService.Format format, List<Column> columns, OutputStream out,
+            JsonFactory jsonFactory) throws IOException {
+        return switch (format) {
+            case csv -> new Csv(columns, out);
+            case ndjson -> new Ndjson(columns, out, jsonFactory);
+        };
+    }
+
+    abstract void writeHeader() throws IOException;
+
+    /**
+     * @param values one value per column, already rendered as text; null for SQL NULL
+     */
+    abstract void writeRow(String[] values) throws IOException;
+
+    private static final class Csv extends ExportRowWriter {
+
+        private final Writer writer;
+
+        Csv(List<Column> columns, OutputStream out) {
+            super(columns);
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        @Override
+        void writeHeader() throws IOException {
+            String[] names = new String[columns.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = columns.get(i).name();
+            }
+            writeRow(names);
+        }
+
+        @Override
+        void writeRow(String[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeField(values[i]);
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private static final class Ndjson extends ExportRowWriter {
+
+        private final JsonGenerator generator;
+
+        Ndjson(List<Column> columns, OutputStream out, JsonFactory jsonFactory) throws IOException {
+            super(columns);
+            this.generator = jsonFactory.createGenerator(out);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        void writeHeader() {
+            // Every NDJSON line is self-describing
+        }
+
+        @Override
+        void writeRow(String[] values) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < values.length; i++) {
+                Column column = columns.get(i);
+                String value = values[i];
+                generator.writeFieldName(column.name());
+                if (value == null) {
+                    generator.writeNull();
+                } else if (column.type() == ColumnType.NUMBER || column.type() == ColumnType.JSON) {
+                    generator.writeRawValue(value);
+                } else {
+                    generator.writeString(value);
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.flush();
+        }
+    }
+}
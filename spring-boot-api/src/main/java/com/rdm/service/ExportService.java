@@ -0,0 +1,245 @@
+package com.rdm.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rdm.exception.BadRequestException;
+import com.rdm.model.AuditLog;
+import com.rdm.model.Device;
+import com.rdm.service.ExportRowWriter.Column;
+import com.rdm.service.ExportRowWriter.ColumnType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams devices and connection and audit history straight from a forward-only JDBC
+ * cursor to an output stream, without materializing entities. Rows are read
+ * fetch-size at a time, so an export runs in constant memory regardless of size.
+ */
+@Service
+public class ExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    public enum Format {
+        csv, ndjson
+    }
+
+    private static final List<Column> CONNECTION_COLUMNS = List.of(
+            new Column("id", ColumnType.NUMBER),
+            new Column("user_id", ColumnType.NUMBER),
+            new Column("username", ColumnType.TEXT),
+            new Column("device_id", ColumnType.NUMBER),
+            new Column("device_name", ColumnType.TEXT),
+            new Column("device_host", ColumnType.TEXT),
+            new Column("protocol", ColumnType.TEXT),
+            new Column("connection_start", ColumnType.TIMESTAMP),
+            new Column("connection_end", ColumnType.TIMESTAMP),
+            new Column("duration", ColumnType.NUMBER),
+            new Column("status", ColumnType.TEXT),
+            new Column("ip_address", ColumnType.TEXT),
+            new Column("user_agent", ColumnType.TEXT));
+
+    private static final String CONNECTION_SQL = "SELECT cl.id, cl.user_id, u.username, cl.device_id, "
+            + "d.name, d.host, d.protocol, cl.connection_start, cl.connection_end, cl.duration, cl.status, "
+            + "host(cl.ip_address), cl.user_agent "
+            + "FROM app.connection_logs cl "
+            + "LEFT JOIN app.users u ON u.id = cl.user_id "
+            + "LEFT JOIN app.devices d ON d.id = cl.device_id";
+
+    private static final List<Column> AUDIT_COLUMNS = List.of(
+            new Column("id", ColumnType.NUMBER),
+            new Column("user_id", ColumnType.NUMBER),
+            new Column("username", ColumnType.TEXT),
+            new Column("action", ColumnType.TEXT),
+            new Column("resource_type", ColumnType.TEXT),
+            new Column("resource_id", ColumnType.NUMBER),
+            new Column("details", ColumnType.JSON),
+            new Column("ip_address", ColumnType.TEXT),
+            new Column("timestamp", ColumnType.TIMESTAMP));
+
+    private static final String AUDIT_SQL = "SELECT al.id, al.user_id, u.username, al.action, al.resource_type, "
+            + "al.resource_id, al.details, host(al.ip_address), al.timestamp "
+            + "FROM app.audit_logs al "
+            + "LEFT JOIN app.users u ON u.id = al.user_id";
+
+    // Same column names as the device import reads, so an export can be imported elsewhere.
+    // Credentials are never exported.
+    private static final List<Column> DEVICE_COLUMNS = List.of(
+            new Column("id", ColumnType.NUMBER),
+            new Column("name", ColumnType.TEXT),
+            new Column("description", ColumnType.TEXT),
+            new Column("host", ColumnType.TEXT),
+            new Column("port", ColumnType.NUMBER),
+            new Column("protocol", ColumnType.TEXT),
+            new Column("username", ColumnType.TEXT),
+            new Column("tags", ColumnType.JSON),
+            new Column("status", ColumnType.TEXT),
+            new Column("guacamole_conn_id", ColumnType.TEXT),
+            new Column("created_at", ColumnType.TIMESTAMP),
+            new Column("updated_at", ColumnType.TIMESTAMP));
+
+    private static final String DEVICE_SQL = "SELECT d.id, d.name, d.description, d.host, d.port, d.protocol, "
+            + "d.username, d.tags, d.status, d.guacamole_conn_id, d.created_at, d.updated_at "
+            + "FROM app.devices d WHERE d.is_active = TRUE";
+
+    private static final String VISIBLE_DEVICE_CONDITION = "(EXISTS (SELECT 1 FROM app.user_devices ud "
+            + "WHERE ud.device_id = d.id AND ud.user_id = ?) OR EXISTS (SELECT 1 FROM app.group_devices gd "
+            + "JOIN app.group_members gm ON gm.group_id = gd.group_id WHERE gd.device_id = d.id AND gm.user_id = ?))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final PermissionService permissionService;
+
+    public ExportService(DataSource dataSource,
+                         ObjectMapper objectMapper,
+                         PermissionService permissionService,
+                         @Value("${rdm.export.fetch-size:1000}") int fetchSize) {
+        // Own template so the fetch size only applies to exports
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.objectMapper = objectMapper;
+        this.permissionService = permissionService;
+    }
+
+    public static Format parseFormat(String format) {
+        try {
+            return Format.valueOf(format.toLowerCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new BadRequestException("Unsupported export format: " + format);
+        }
+    }
+
+    /**
+     * Export active devices in ID order. Non-admin users only get devices they can view.
+     *
+     * @return number of rows written
+     */
+    @Transactional(readOnly = true)
+    public long exportDevices(Device.Protocol protocol, Format format, OutputStream out) throws IOException {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(DEVICE_SQL);
+        if (!permissionService.isAdmin()) {
+            Integer userId = permissionService.getCurrentUserId();
+            sql.append(" AND ").append(VISIBLE_DEVICE_CONDITION);
+            params.add(userId);
+            params.add(userId);
+        }
+        if (protocol != null) {
+            sql.append(" AND d.protocol = CAST(? AS app.device_protocol)");
+            params.add(protocol.name());
+        }
+        sql.append(" ORDER BY d.id");
+        return stream(sql.toString(), params, DEVICE_COLUMNS, format, out);
+    }
+
+    /**
+     * Export connection logs, oldest first. Non-admin users only ever get their own connections.
+     *
+     * @return number of rows written
+     */
+    @Transactional(readOnly = true)
+    public long exportConnectionLogs(Integer userId, Integer deviceId, LocalDateTime startDate,
+            LocalDateTime endDate, Format format, OutputStream out) throws IOException {
+        if (!permissionService.isAdmin()) {
+            userId = permissionService.getCurrentUserId();
+        }
+
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        addCondition(conditions, params, "cl.user_id = ?", userId);
+        addCondition(conditions, params, "cl.device_id = ?", deviceId);
+        addCondition(conditions, params, "cl.connection_start >= ?", startDate);
+        addCondition(conditions, params, "cl.connection_start <= ?", endDate);
+
+        String sql = CONNECTION_SQL + where(conditions) + " ORDER BY cl.connection_start, cl.id";
+        return stream(sql, params, CONNECTION_COLUMNS, format, out);
+    }
+
+    /**
+     * Export audit logs, oldest first. All filters are optional.
+     *
+     * @return number of rows written
+     */
+    @Transactional(readOnly = true)
+    public long exportAuditLogs(Integer userId, AuditLog.AuditAction action, String resourceType,
+            LocalDateTime startDate, LocalDateTime endDate, Format format, OutputStream out) throws IOException {
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        addCondition(conditions, params, "al.user_id = ?", userId);
+        addCondition(conditions, params, "al.action = CAST(? AS app.audit_action)",
+                action != null ? action.name() : null);
+        addCondition(conditions, params, "al.resource_type = ?", resourceType);
+        addCondition(conditions, params, "al.timestamp >= ?", startDate);
+        addCondition(conditions, params, "al.timestamp <= ?", endDate);
+
+        String sql = AUDIT_SQL + where(conditions) + " ORDER BY al.timestamp, al.id";
+        return stream(sql, params, AUDIT_COLUMNS, format, out);
+    }
+
+    private long stream(String sql, List<Object> params, List<Column> columns, Format format, OutputStream out)
+            throws IOException {
+        long[] rows = {0};
+        try (ExportRowWriter writer = ExportRowWriter.create(format, columns, out, objectMapper.getFactory())) {
+            writer.writeHeader();
+            String[] values = new String[columns.size()];
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                return ps;
+            }, rs -> {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = readValue(rs, i + 1, columns.get(i).type());
+                }
+                try {
+                    writer.writeRow(values);
+                } catch (IOException e) {
+                    // Client went away; abort the query instead of reading the rest of the cursor
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            logger.info("Export aborted after {} rows: {}", rows[0], e.getCause().getMessage());
+            throw e.getCause();
+        }
+        logger.info("Exported {} rows as {}", rows[0], format);
+        return rows[0];
+    }
+
+    private static String readValue(ResultSet rs, int index, ColumnType type) throws SQLException {
+        if (type == ColumnType.TIMESTAMP) {
+            OffsetDateTime value = rs.getObject(index, OffsetDateTime.class);
+            return value != null ? value.toString() : null;
+        }
+        return rs.getString(index);
+    }
+
+    private static void addCondition(List<String> conditions, List<Object> params, String condition, Object value) {
+        if (value != null) {
+            conditions.add(condition);
+            params.add(value);
+        }
+    }
+
+    private static String where(List<String> conditions) {
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+}
@@ -0,0 +1,361 @@
+package com.rdm.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Copies session end times from Guacamole's guacamole_connection_history into
+ * app.connection_logs, so sessions are accounted for even when the browser never
+ * ends them. History is read in history_id order from a high-water mark kept in
+ * app.guacamole_history_ingest; rows still open when read are remembered there
+ * and checked again on every run until they end, or are given up on once older
+ * than the maximum open age. So are ended rows whose log is held open by another
+ * row, so they are assigned together again once it ends.
+ *
+ * All connections run under the shared Guacamole service account, so a history
+ * row's username says nothing about which user it belongs to and is not used.
+ * Instead, the ended and still open rows of a batch are assigned to connection
+ * logs in start order: each claims the log of the device owning its Guacamole
+ * connection whose start is closest to its own, within the match window, among
+ * the logs no overlapping row has claimed. A row that starts after the last
+ * row on a log ended, within the match window, is taken as a reconnect and
+ * continues that log. A log ends with the last of its rows, with its end and
+ * duration overwritten with Guacamole's in JDBC batches, and a log that was
+ * still open is released from the {@link ActiveSessionRegistry}. While any of
+ * its rows is still open, the log is left as it is.
+ */
+@Service
+public class GuacamoleHistoryIngester {
+
+    private static final Logger logger = LoggerFactory.getLogger(GuacamoleHistoryIngester.class);
+
+    // Shared sessions (sharing_profile_id set) are another user watching, not a connection of their own
+    private static final String HISTORY_COLUMNS = "SELECT history_id, connection_id, start_date, end_date "
+            + "FROM guacamole_connection_history ";
+
+    private static final String NEW_HISTORY_SQL = HISTORY_COLUMNS
+            + "WHERE history_id > ? AND sharing_profile_id IS NULL ORDER BY history_id LIMIT ?";
+
+    private static final String OPEN_HISTORY_SQL = HISTORY_COLUMNS + "WHERE history_id = ANY(?)";
+
+    // The start window lets partition pruning skip all but one or two months of connection_logs
+    private static final String CANDIDATES_SQL = "SELECT h.history_id, cl.id, cl.connection_start, "
+            + "cl.connection_end, cl.user_id, cl.device_id "
+            + "FROM unnest(?::integer[], ?::integer[], ?::timestamptz[]) "
+            + "AS h(history_id, connection_id, start_date) "
+            + "JOIN app.devices d ON d.guacamole_conn_id = CAST(h.connection_id AS varchar) "
+            + "CROSS JOIN LATERAL (SELECT cl.id, cl.connection_start, cl.connection_end, cl.user_id, cl.device_id "
+            + "FROM app.connection_logs cl "
+            + "WHERE cl.device_id = d.id "
+            + "AND cl.connection_start BETWEEN h.start_date - ? * INTERVAL '1 second' "
+            + "AND h.start_date + ? * INTERVAL '1 second') cl "
+            + "ORDER BY h.history_id, abs(EXTRACT(EPOCH FROM cl.connection_start - h.start_date)), cl.id";
+
+    private static final String UPDATE_SQL = "UPDATE app.connection_logs SET connection_end = ?, duration = ? "
+            + "WHERE id = ? AND connection_start = ? AND connection_end IS DISTINCT FROM ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ActiveSessionRegistry activeSessionRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${rdm.guacamole.history.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rdm.guacamole.history.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${rdm.guacamole.history.match-window:PT5M}")
+    private Duration matchWindow;
+
+    @Value("${rdm.guacamole.history.max-open-age:PT24H}")
+    private Duration maxOpenAge;
+
+    public GuacamoleHistoryIngester(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    ActiveSessionRegistry activeSessionRegistry,
+                                    ApplicationEventPublisher eventPublisher,
+                                    MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.activeSessionRegistry = activeSessionRegistry;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${rdm.guacamole.history.interval:PT1M}")
+    public void ingest() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            // A full batch means there is more to read; the first run back-fills all history this way
+            boolean more = true;
+            while (more) {
+                more = Boolean.TRUE.equals(transactionTemplate.execute(status -> ingestBatch()));
+            }
+        } catch (Exception e) {
+            // The high-water mark only moves with a committed batch, so the next run picks up here
+            logger.error("Failed to ingest Guacamole connection history", e);
+        }
+    }
+
+    /**
+     * Read, match and apply one batch of history, and move the high-water mark.
+     * The state row is locked for the whole batch, so instances take turns.
+     *
+     * @return whether a full batch of new history was read
+     */
+    private boolean ingestBatch() {
+        Map<String, Object> state = jdbcTemplate.queryForMap("SELECT last_history_id, open_history_ids "
+                + "FROM app.guacamole_history_ingest WHERE id = 1 FOR UPDATE");
+        int lastHistoryId = ((Number) state.get("last_history_id")).intValue();
+        Integer[] openHistoryIds = toIntegers((Array) state.get("open_history_ids"));
+
+        List<HistoryRow> rows = new ArrayList<>();
+        if (openHistoryIds.length > 0) {
+            rows.addAll(jdbcTemplate.query(OPEN_HISTORY_SQL, this::mapHistoryRow, (Object) openHistoryIds));
+        }
+        List<HistoryRow> newRows = jdbcTemplate.query(NEW_HISTORY_SQL, this::mapHistoryRow, lastHistoryId, batchSize);
+        rows.addAll(newRows);
+        if (!newRows.isEmpty()) {
+            lastHistoryId = newRows.get(newRows.size() - 1).historyId();
+        }
+
+        Instant openCutoff = Instant.now().minus(maxOpenAge);
+        List<HistoryRow> ended = new ArrayList<>();
+        List<HistoryRow> stillOpen = new ArrayList<>();
+        int abandoned = 0;
+        for (HistoryRow row : rows) {
+            if (row.endDate() != null) {
+                ended.add(row);
+            } else if (row.startDate().toInstant().isBefore(openCutoff)) {
+                abandoned++;
+            } else {
+                stillOpen.add(row);
+            }
+        }
+
+        List<Integer> carried = stillOpen.stream().map(HistoryRow::historyId).collect(Collectors.toList());
+        int matched = apply(ended, stillOpen, carried);
+        // Ended rows held back with an open row on the same log are counted once that log is written
+        int held = carried.size() - stillOpen.size();
+        int unmatched = ended.size() - matched - held;
+        count("matched", matched);
+        count("unmatched", unmatched);
+        count("abandoned", abandoned);
+
+        jdbcTemplate.update("UPDATE app.guacamole_history_ingest SET last_history_id = ?, open_history_ids = ?, "
+                + "updated_at = LOCALTIMESTAMP WHERE id = 1", lastHistoryId, carried.toArray(Integer[]::new));
+        if (!rows.isEmpty()) {
+            logger.debug("Ingested {} Guacamole history rows up to {}: {} matched, {} unmatched, {} held, "
+                    + "{} still open, {} abandoned", rows.size(), lastHistoryId, matched, unmatched, held,
+                    stillOpen.size(), abandoned);
+        }
+        return newRows.size() == batchSize;
+    }
+
+    /**
+     * Assign history rows to connection logs and write the end times of logs
+     * whose rows have all ended. Ended rows of a log that still has an open row
+     * are added to {@code carried}, to be assigned again with it next run.
+     *
+     * @return number of ended history rows matched to a log that was written
+     */
+    private int apply(List<HistoryRow> ended, List<HistoryRow> open, List<Integer> carried) {
+        if (ended.isEmpty()) {
+            return 0;
+        }
+
+        List<HistoryRow> rows = new ArrayList<>(ended);
+        rows.addAll(open);
+        rows.sort(Comparator.comparing(HistoryRow::startDate).thenComparingInt(HistoryRow::historyId));
+        Map<Integer, List<LogCandidate>> candidates = findCandidates(rows);
+
+        Map<Integer, Claim> claims = new LinkedHashMap<>();
+        for (HistoryRow row : rows) {
+            claim(row, candidates.getOrDefault(row.historyId(), List.of()), claims);
+        }
+
+        List<Claim> endedLogs = new ArrayList<>();
+        int matched = 0;
+        for (Claim claim : claims.values()) {
+            if (claim.open) {
+                carried.addAll(claim.endedRows);
+            } else {
+                endedLogs.add(claim);
+                matched += claim.endedRows.size();
+            }
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, endedLogs, Math.max(1, endedLogs.size()),
+                (ps, claim) -> {
+                    LogCandidate log = claim.log;
+                    ps.setTimestamp(1, claim.end);
+                    ps.setInt(2, (int) Math.max(0,
+                            Duration.between(log.connectionStart().toInstant(), claim.end.toInstant()).getSeconds()));
+                    ps.setInt(3, log.connectionLogId());
+                    ps.setTimestamp(4, log.connectionStart());
+                    ps.setTimestamp(5, claim.end);
+                });
+
+        for (int i = 0; i < endedLogs.size(); i++) {
+            LogCandidate log = endedLogs.get(i).log;
+            // Ended in Guacamole while the browser never told us: release the session slot
+            if (log.wasOpen() && counts[0][i] != 0) {
+                activeSessionRegistry.unregister(log.connectionLogId());
+                eventPublisher.publishEvent(LiveEvent.connection(LiveEvent.CONNECTION_ENDED,
+                        log.userId(), log.deviceId(),
+                        Map.of("connectionLogId", log.connectionLogId(),
+                                "deviceId", log.deviceId(),
+                                "status", "success")));
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Connection logs within the match window of each history row, closest
+     * start first.
+     */
+    private Map<Integer, List<LogCandidate>> findCandidates(List<HistoryRow> rows) {
+        Integer[] historyIds = new Integer[rows.size()];
+        Integer[] connectionIds = new Integer[rows.size()];
+        String[] starts = new String[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            HistoryRow row = rows.get(i);
+            historyIds[i] = row.historyId();
+            connectionIds[i] = row.connectionId();
+            starts[i] = row.startDate().toInstant().toString();
+        }
+
+        Map<Integer, List<LogCandidate>> candidates = new HashMap<>();
+        long windowSeconds = matchWindow.getSeconds();
+        jdbcTemplate.query(CANDIDATES_SQL, rs -> {
+            candidates.computeIfAbsent(rs.getInt(1), k -> new ArrayList<>())
+                    .add(new LogCandidate(rs.getInt(2), rs.getTimestamp(3), rs.getTimestamp(4) == null,
+                            rs.getInt(5), rs.getInt(6)));
+        }, historyIds, connectionIds, starts, windowSeconds, windowSeconds);
+        return candidates;
+    }
+
+    /**
+     * Give the row the closest candidate log it can share: one no row has
+     * claimed, or one whose rows all ended before this one started. Failing
+     * that, a row starting within the match window after the rows of a log on
+     * the same connection ended continues that log.
+     *
+     */
+    private void claim(HistoryRow row, List<LogCandidate> candidates, Map<Integer, Claim> claims) {
+        Claim claim = null;
+        for (LogCandidate candidate : candidates) {
+            Claim existing = claims.get(candidate.connectionLogId());
+            if (existing == null) {
+                claim = new Claim(candidate, row.connectionId());
+                claims.put(candidate.connectionLogId(), claim);
+                break;
+            }
+            if (existing.endedBy(row.startDate())) {
+                claim = existing;
+                break;
+            }
+        }
+        if (claim == null) {
+            Timestamp earliestEnd = Timestamp.from(row.startDate().toInstant().minus(matchWindow));
+            for (Claim existing : claims.values()) {
+                if (existing.connectionId.equals(row.connectionId()) && existing.endedBy(row.startDate())
+                        && !existing.end.before(earliestEnd)
+                        && (claim == null || existing.end.after(claim.end))) {
+                    claim = existing;
+                }
+            }
+        }
+        if (claim != null) {
+            claim.add(row);
+        }
+    }
+
+    private HistoryRow mapHistoryRow(ResultSet rs, int rowNum) throws SQLException {
+        return new HistoryRow(rs.getInt(1), (Integer) rs.getObject(2), rs.getTimestamp(3), rs.getTimestamp(4));
+    }
+
+    private void count(String result, int amount) {
+        Counter.builder("rdm.guacamole.history.rows")
+                .description("Guacamole history rows ingested: ended and matched to a connection log, ended "
+                        + "without a match, or given up on while still open")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment(amount);
+    }
+
+    private static Integer[] toIntegers(Array array) {
+        try {
+            return (Integer[]) array.getArray();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read open history IDs", e);
+        }
+    }
+
+    private record HistoryRow(int historyId, Integer connectionId, Timestamp startDate, Timestamp endDate) {
+    }
+
+    private record LogCandidate(int connectionLogId, Timestamp connectionStart, boolean wasOpen,
+                                int userId, int deviceId) {
+    }
+
+    /**
+     * The history rows of one batch assigned to a connection log: whether any
+     * of them is still open, and the ended ones with their latest end.
+     */
+    private static final class Claim {
+
+        private final LogCandidate log;
+        private final Integer connectionId;
+        private final List<Integer> endedRows = new ArrayList<>();
+        private boolean open;
+        private Timestamp end;
+
+        private Claim(LogCandidate log, Integer connectionId) {
+            this.log = log;
+            this.connectionId = connectionId;
+        }
+
+        private boolean endedBy(Timestamp start) {
+            return !open && end != null && !end.after(start);
+        }
+
+        private void add(HistoryRow row) {
+            if (row.endDate() == null) {
+                open = true;
+                return;
+            }
+            endedRows.add(row.historyId());
+            if (end == null || row.endDate().after(end)) {
+                end = row.endDate();
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.rdm.service;
+
+import com.rdm.model.Device;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Records devices whose Guacamole connection has to be brought in line with the
+ * device row. Entries are written in the caller's transaction, so they exist
+ * exactly when the device change commits; {@link GuacamoleOutboxDispatcher}
+ * applies them in the background. One entry per device: further changes while
+ * an entry is pending only bump its version.
+ */
+@Component
+public class GuacamoleOutbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(GuacamoleOutbox.class);
+
+    private static final String ENQUEUE_SQL = "INSERT INTO app.guacamole_outbox (device_id) VALUES (?) "
+            + "ON CONFLICT (device_id) DO UPDATE SET version = app.guacamole_outbox.version + 1, attempts = 0, "
+            + "next_attempt_at = LOCALTIMESTAMP, last_error = NULL, updated_at = LOCALTIMESTAMP";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final GuacamoleService guacamoleService;
+    private final GuacamoleOutboxDispatcher dispatcher;
+    private final EntityCacheEvictor entityCacheEvictor;
+
+    public GuacamoleOutbox(JdbcTemplate jdbcTemplate,
+                           GuacamoleService guacamoleService,
+                           GuacamoleOutboxDispatcher dispatcher,
+                           EntityCacheEvictor entityCacheEvictor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.guacamoleService = guacamoleService;
+        this.dispatcher = dispatcher;
+        this.entityCacheEvictor = entityCacheEvictor;
+    }
+
+    public void enqueue(Integer deviceId) {
+        enqueue(List.of(deviceId));
+    }
+
+    /**
+     * Queue a sync of the given devices' connections. Must run in the transaction
+     * that changed the devices; the dispatcher is woken once it commits.
+     */
+    public void enqueue(Collection<Integer> deviceIds) {
+        if (deviceIds.isEmpty()) {
+            return;
+        }
+        // Sorted, so concurrent enqueues of overlapping devices lock rows in the same order
+        List<Integer> sorted = deviceIds.stream().sorted().distinct().toList();
+        jdbcTemplate.batchUpdate(ENQUEUE_SQL, sorted, sorted.size(), (ps, deviceId) -> ps.setInt(1, deviceId));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatcher.wake();
+                }
+            });
+        } else {
+            dispatcher.wake();
+        }
+    }
+
+    /**
+     * Connection ID of the device, creating the connection now if the dispatcher
+     * has not got to it yet, so a user can connect to a device created moments
+     * ago. Locks the device row, which the dispatcher also does, so the two
+     * never both create a connection for it.
+     */
+    @Transactional
+    public String ensureConnection(Device device) {
+        String connectionId = jdbcTemplate.queryForObject(
+                "SELECT guacamole_conn_id FROM app.devices WHERE id = ? FOR UPDATE", String.class, device.getId());
+        if (connectionId != null && !connectionId.isEmpty()) {
+            return connectionId;
+        }
+
+        logger.info("Device {} has no Guacamole connection yet, creating one", device.getId());
+        connectionId = guacamoleService.createGuacamoleConnection(device);
+        jdbcTemplate.update("UPDATE app.devices SET guacamole_conn_id = ? WHERE id = ?", connectionId, device.getId());
+        entityCacheEvictor.evictDevicesAfterCommit(List.of(device.getId()));
+        return connectionId;
+    }
+}
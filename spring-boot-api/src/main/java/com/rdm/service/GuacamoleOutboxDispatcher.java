@@ -0,0 +1,277 @@
+package com.rdm.service;
+
+import com.rdm.config.VirtualThreads;
+import com.rdm.model.Device;
+import com.rdm.repository.DeviceRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies pending {@link GuacamoleOutbox} entries from a single background thread.
+ *
+ * Each round claims up to a batch of due entries for the lease time, skipping
+ * rows another instance holds, and applies them in one transaction: the devices
+ * are locked, active ones are provisioned in one bulk round and inactive ones
+ * have their connection deleted, and the entries are removed unless they were
+ * changed again meanwhile. If the batch fails, its entries are retried one by
+ * one; an entry that still fails is put back with exponential backoff.
+ *
+ * The thread is woken when an enqueuing transaction commits and otherwise polls,
+ * which picks up due retries and entries written by other instances.
+ */
+@Component
+public class GuacamoleOutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(GuacamoleOutboxDispatcher.class);
+
+    private static final String CLAIM_SQL = "UPDATE app.guacamole_outbox o "
+            + "SET claimed_until = LOCALTIMESTAMP + ? * INTERVAL '1 millisecond' "
+            + "WHERE o.device_id IN (SELECT device_id FROM app.guacamole_outbox "
+            + "WHERE next_attempt_at <= LOCALTIMESTAMP AND (claimed_until IS NULL OR claimed_until < LOCALTIMESTAMP) "
+            + "ORDER BY next_attempt_at LIMIT ? FOR UPDATE SKIP LOCKED) "
+            + "RETURNING o.device_id, o.version, o.attempts, EXTRACT(EPOCH FROM LOCALTIMESTAMP - o.created_at) * 1000";
+
+    private static final String COMPLETE_SQL = "DELETE FROM app.guacamole_outbox WHERE device_id = ? AND version = ?";
+
+    // Changed again while being applied: release for the next round, timing its lag from the latest change
+    private static final String REQUEUE_SQL = "UPDATE app.guacamole_outbox SET claimed_until = NULL, "
+            + "created_at = updated_at WHERE device_id = ? AND version <> ?";
+
+    // Backoff only applies if nobody changed the device since the claim; a new change is tried right away
+    private static final String FAIL_SQL = "UPDATE app.guacamole_outbox SET claimed_until = NULL, "
+            + "attempts = CASE WHEN version = ? THEN attempts + 1 ELSE attempts END, "
+            + "next_attempt_at = CASE WHEN version = ? THEN LOCALTIMESTAMP + ? * INTERVAL '1 millisecond' "
+            + "ELSE next_attempt_at END, last_error = ? WHERE device_id = ?";
+
+    private static final String BACKLOG_SQL = "SELECT count(*), "
+            + "COALESCE(EXTRACT(EPOCH FROM LOCALTIMESTAMP - min(created_at)) * 1000, 0) FROM app.guacamole_outbox";
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DeviceRepository deviceRepository;
+    private final GuacamoleService guacamoleService;
+    private final EntityCacheEvictor entityCacheEvictor;
+    private final Environment environment;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final Duration lease;
+    private final Duration retryInitial;
+    private final Duration retryMax;
+    private final Timer lagTimer;
+    private final Counter failureCounter;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong oldestAgeMillis = new AtomicLong();
+    private final Semaphore wakeups = new Semaphore(0);
+
+    private Thread dispatcherThread;
+    private volatile boolean running = true;
+
+    public GuacamoleOutboxDispatcher(JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     DeviceRepository deviceRepository,
+                                     GuacamoleService guacamoleService,
+                                     EntityCacheEvictor entityCacheEvictor,
+                                     MeterRegistry meterRegistry,
+                                     Environment environment,
+                                     @Value("${rdm.guacamole.outbox.batch-size:200}") int batchSize,
+                                     @Value("${rdm.guacamole.outbox.poll-interval:PT5S}") Duration pollInterval,
+                                     @Value("${rdm.guacamole.outbox.lease:PT1M}") Duration lease,
+                                     @Value("${rdm.guacamole.outbox.retry-initial:PT5S}") Duration retryInitial,
+                                     @Value("${rdm.guacamole.outbox.retry-max:PT10M}") Duration retryMax) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.deviceRepository = deviceRepository;
+        this.guacamoleService = guacamoleService;
+        this.entityCacheEvictor = entityCacheEvictor;
+        this.environment = environment;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.lease = lease;
+        this.retryInitial = retryInitial;
+        this.retryMax = retryMax;
+        this.lagTimer = Timer.builder("rdm.guacamole.outbox.lag")
+                .description("Time from a device change to its Guacamole connection being updated")
+                .register(meterRegistry);
+        this.failureCounter = Counter.builder("rdm.guacamole.outbox.failures")
+                .description("Guacamole sync attempts that failed and were scheduled for retry")
+                .register(meterRegistry);
+        Gauge.builder("rdm.guacamole.outbox.pending", pending, AtomicLong::get)
+                .description("Devices waiting for their Guacamole connection to be updated")
+                .register(meterRegistry);
+        Gauge.builder("rdm.guacamole.outbox.oldest.age", oldestAgeMillis, age -> age.get() / 1000.0)
+                .description("Age of the oldest Guacamole change not yet applied")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        dispatcherThread = VirtualThreads.threadFactory(environment, "guacamole-outbox-").newThread(this::run);
+        dispatcherThread.start();
+    }
+
+    /**
+     * Have the dispatcher look for due entries now rather than at its next poll.
+     */
+    public void wake() {
+        if (wakeups.availablePermits() == 0) {
+            wakeups.release();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (dispatcherThread == null) {
+            return;
+        }
+        wake();
+        try {
+            dispatcherThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            int claimed = 0;
+            try {
+                claimed = dispatchBatch();
+                refreshBacklog();
+            } catch (RuntimeException e) {
+                logger.error("Guacamole outbox round failed", e);
+            }
+            // A full batch means more may be due already
+            if (claimed == batchSize) {
+                continue;
+            }
+            try {
+                wakeups.tryAcquire(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+                wakeups.drainPermits();
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    private int dispatchBatch() {
+        List<Entry> entries = jdbcTemplate.query(CLAIM_SQL,
+                (rs, rowNum) -> new Entry(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getLong(4)),
+                lease.toMillis(), batchSize);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        long claimedAt = System.nanoTime();
+        try {
+            apply(entries, claimedAt);
+        } catch (RuntimeException e) {
+            if (entries.size() == 1) {
+                fail(entries.get(0), e);
+            } else {
+                // One bad device (e.g. a name Guacamole rejects) fails the whole batch; retry them one by one
+                logger.warn("Guacamole outbox batch of {} devices failed, retrying individually", entries.size(), e);
+                for (Entry entry : entries) {
+                    try {
+                        apply(List.of(entry), claimedAt);
+                    } catch (RuntimeException deviceError) {
+                        fail(entry, deviceError);
+                    }
+                }
+            }
+        }
+        return entries.size();
+    }
+
+    private void apply(List<Entry> entries, long claimedAt) {
+        Map<Integer, Entry> byDevice = new LinkedHashMap<>();
+        entries.forEach(entry -> byDevice.put(entry.deviceId(), entry));
+
+        List<Integer> changed = transactionTemplate.execute(status -> {
+            List<Device> devices = deviceRepository.findAllByIdForUpdate(byDevice.keySet());
+            List<Device> active = devices.stream().filter(Device::getIsActive).toList();
+            Map<Integer, String> connectionIds = guacamoleService.provisionConnections(active).connectionIds();
+
+            List<Object[]> updates = new ArrayList<>();
+            for (Device device : active) {
+                String connectionId = connectionIds.get(device.getId());
+                if (!Objects.equals(connectionId, device.getGuacamoleConnId())) {
+                    updates.add(new Object[] {connectionId, device.getId()});
+                }
+            }
+            for (Device device : devices) {
+                if (!device.getIsActive() && device.getGuacamoleConnId() != null) {
+                    guacamoleService.deleteGuacamoleConnection(device.getGuacamoleConnId());
+                    updates.add(new Object[] {null, device.getId()});
+                }
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE app.devices SET guacamole_conn_id = ? WHERE id = ?",
+                        updates, new int[] {Types.VARCHAR, Types.INTEGER});
+            }
+
+            List<Object[]> versions = entries.stream()
+                    .map(entry -> new Object[] {entry.deviceId(), entry.version()})
+                    .toList();
+            jdbcTemplate.batchUpdate(COMPLETE_SQL, versions);
+            jdbcTemplate.batchUpdate(REQUEUE_SQL, versions);
+            return updates.stream().map(update -> (Integer) update[1]).toList();
+        });
+
+        entityCacheEvictor.evictDevices(changed);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - claimedAt);
+        for (Entry entry : entries) {
+            lagTimer.record(entry.ageMillis() + elapsedMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void fail(Entry entry, RuntimeException e) {
+        failureCounter.increment();
+        long backoffMillis = Math.min(retryMax.toMillis(),
+                retryInitial.toMillis() << Math.min(entry.attempts(), 20));
+        logger.warn("Guacamole sync of device {} failed (attempt {}), retrying in {} ms",
+                entry.deviceId(), entry.attempts() + 1, backoffMillis, e);
+        String error = String.valueOf(e.getMessage());
+        if (error.length() > MAX_ERROR_LENGTH) {
+            error = error.substring(0, MAX_ERROR_LENGTH);
+        }
+        jdbcTemplate.update(FAIL_SQL, entry.version(), entry.version(), backoffMillis, error, entry.deviceId());
+    }
+
+    private void refreshBacklog() {
+        jdbcTemplate.query(BACKLOG_SQL, rs -> {
+            pending.set(rs.getLong(1));
+            oldestAgeMillis.set(rs.getLong(2));
+        });
+    }
+
+    private record Entry(int deviceId, int version, int attempts, long ageMillis) {
+    }
+}
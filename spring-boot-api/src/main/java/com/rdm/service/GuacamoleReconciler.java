@@ -0,0 +1,396 @@
+package com.rdm.service;
+
+import com.rdm.dto.GuacamoleDriftDTO;
+import com.rdm.dto.GuacamoleReconcileReportDTO;
+import com.rdm.exception.BadRequestException;
+import com.rdm.model.Device;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds and repairs drift between devices and their Guacamole connections, e.g.
+ * from edits made in Guacamole directly or provisioning that failed long ago.
+ *
+ * Devices and connections are merge-walked in connection ID order over two
+ * forward-only cursors read in one snapshot, so only the connection at hand and
+ * a batch of pending repairs are held in memory however many there are. Each
+ * connection is compared against what {@link GuacamoleService#buildConnectionParameters}
+ * gives for its device. Repairs are handed to the {@link GuacamoleOutbox} batch by
+ * batch; devices sharing a connection are detached first so they get their own.
+ * Orphaned connections are only deleted when enabled, as Guacamole may also
+ * hold connections created by hand.
+ */
+@Service
+public class GuacamoleReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(GuacamoleReconciler.class);
+
+    // Where several devices point at one connection, an active one comes first and keeps it
+    private static final String DEVICE_SQL = "SELECT d.id, CAST(d.guacamole_conn_id AS integer) AS connection_id, "
+            + "d.name, d.host, d.port, d.protocol, d.username, d.password_encrypted, d.private_key, d.is_active "
+            + "FROM app.devices d WHERE d.guacamole_conn_id ~ '^[0-9]{1,9}$' "
+            + "ORDER BY connection_id, d.is_active DESC, d.id";
+
+    private static final String CONNECTION_SQL = "SELECT c.connection_id, c.connection_name, c.protocol, "
+            + "p.parameter_name, p.parameter_value FROM guacamole_connection c "
+            + "LEFT JOIN guacamole_connection_parameter p ON p.connection_id = c.connection_id "
+            + "ORDER BY c.connection_id";
+
+    private static final String UNLINKED_SQL = "SELECT id FROM app.devices WHERE is_active = TRUE "
+            + "AND (guacamole_conn_id IS NULL OR guacamole_conn_id !~ '^[0-9]{1,9}$') ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTransaction;
+    private final TransactionTemplate repairTransaction;
+    private final GuacamoleService guacamoleService;
+    private final GuacamoleOutbox guacamoleOutbox;
+    private final EntityCacheEvictor entityCacheEvictor;
+    private final MeterRegistry meterRegistry;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Value("${rdm.guacamole.reconcile.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${rdm.guacamole.reconcile.batch-size:500}")
+    private int batchSize;
+
+    @Value("${rdm.guacamole.reconcile.delete-orphans:false}")
+    private boolean deleteOrphans;
+
+    @Value("${rdm.guacamole.reconcile.report-limit:100}")
+    private int reportLimit;
+
+    public GuacamoleReconciler(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               GuacamoleService guacamoleService,
+                               GuacamoleOutbox guacamoleOutbox,
+                               EntityCacheEvictor entityCacheEvictor,
+                               MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Both cursors must see the same state, or a connection created between them looks orphaned
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTransaction.setReadOnly(true);
+        this.repairTransaction = new TransactionTemplate(transactionManager);
+        this.repairTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.guacamoleService = guacamoleService;
+        this.guacamoleOutbox = guacamoleOutbox;
+        this.entityCacheEvictor = entityCacheEvictor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(cron = "${rdm.guacamole.reconcile.cron:0 45 3 * * *}")
+    public void reconcileScheduled() {
+        try {
+            reconcile(false);
+        } catch (BadRequestException e) {
+            logger.info("Skipping scheduled Guacamole reconciliation: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Compare every device with its Guacamole connection and, unless this is a
+     * dry run, queue repairs for whatever differs.
+     */
+    public GuacamoleReconcileReportDTO reconcile(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            throw new BadRequestException("A Guacamole reconciliation is already running");
+        }
+        try {
+            long started = System.currentTimeMillis();
+            Run run = new Run(dryRun);
+            snapshotTransaction.executeWithoutResult(status ->
+                    jdbcTemplate.execute((ConnectionCallback<Void>) conn -> {
+                        walk(conn, run);
+                        return null;
+                    }));
+            run.flush();
+
+            GuacamoleReconcileReportDTO report = run.report;
+            report.setDurationMs(System.currentTimeMillis() - started);
+            logger.info("Guacamole reconciliation{} of {} devices and {} connections: {} in sync, {} missing, "
+                            + "{} drifted, {} stale, {} duplicate, {} orphaned; {} repairs queued, {} orphans deleted",
+                    dryRun ? " (dry run)" : "", report.getDevicesScanned(), report.getConnectionsScanned(),
+                    report.getInSync(), report.getMissing(), report.getDrifted(), report.getStale(),
+                    report.getDuplicate(), report.getOrphaned(), report.getRepairsQueued(),
+                    report.getOrphansDeleted());
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void walk(Connection conn, Run run) throws SQLException {
+        try (PreparedStatement deviceStatement = conn.prepareStatement(DEVICE_SQL);
+             PreparedStatement connectionStatement = conn.prepareStatement(CONNECTION_SQL)) {
+            deviceStatement.setFetchSize(fetchSize);
+            connectionStatement.setFetchSize(fetchSize);
+            try (ResultSet deviceRows = deviceStatement.executeQuery();
+                 ResultSet connectionRows = connectionStatement.executeQuery()) {
+                ConnectionCursor connections = new ConnectionCursor(connectionRows);
+                LinkedDevice device = nextDevice(deviceRows);
+                StoredConnection connection = connections.next();
+
+                while (device != null || connection != null) {
+                    if (connection == null || (device != null && device.connectionId() < connection.id())) {
+                        // Points at a connection that does not exist
+                        run.report.setDevicesScanned(run.report.getDevicesScanned() + 1);
+                        run.found(device.device().getIsActive() ? "missing" : "stale",
+                                device.device().getId(), device.connectionId(), null);
+                        run.queue(device.device().getId());
+                        device = nextDevice(deviceRows);
+                    } else if (device == null || connection.id() < device.connectionId()) {
+                        run.report.setConnectionsScanned(run.report.getConnectionsScanned() + 1);
+                        run.found("orphaned", null, connection.id(), null);
+                        run.orphan(connection.id());
+                        connection = connections.next();
+                    } else {
+                        run.report.setConnectionsScanned(run.report.getConnectionsScanned() + 1);
+                        boolean owned = false;
+                        while (device != null && device.connectionId() == connection.id()) {
+                            run.report.setDevicesScanned(run.report.getDevicesScanned() + 1);
+                            if (owned) {
+                                run.found("duplicate", device.device().getId(), connection.id(), null);
+                                run.detach(device.device(), connection.id());
+                            } else {
+                                compare(device.device(), connection, run);
+                                owned = true;
+                            }
+                            device = nextDevice(deviceRows);
+                        }
+                        connection = connections.next();
+                    }
+                }
+            }
+        }
+
+        // Active devices that never got a connection, or carry an ID Guacamole could not have issued
+        try (PreparedStatement statement = conn.prepareStatement(UNLINKED_SQL)) {
+            statement.setFetchSize(fetchSize);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    run.report.setDevicesScanned(run.report.getDevicesScanned() + 1);
+                    run.found("missing", rs.getInt(1), null, null);
+                    run.queue(rs.getInt(1));
+                }
+            }
+        }
+    }
+
+    private void compare(Device device, StoredConnection connection, Run run) {
+        if (!device.getIsActive()) {
+            run.found("stale", device.getId(), connection.id(), null);
+            run.queue(device.getId());
+            return;
+        }
+
+        List<String> differences = new ArrayList<>();
+        if (!Objects.equals(device.getName(), connection.name())) {
+            differences.add("name");
+        }
+        if (!guacamoleService.mapProtocolToGuacamole(device.getProtocol()).equals(connection.protocol())) {
+            differences.add("protocol");
+        }
+        Map<String, String> expected = guacamoleService.buildConnectionParameters(device);
+        Set<String> names = new HashSet<>(expected.keySet());
+        names.addAll(connection.parameters().keySet());
+        for (String name : names.stream().sorted().toList()) {
+            if (!Objects.equals(expected.get(name), connection.parameters().get(name))) {
+                differences.add("parameter:" + name);
+            }
+        }
+
+        if (differences.isEmpty()) {
+            run.report.setInSync(run.report.getInSync() + 1);
+        } else {
+            run.found("drifted", device.getId(), connection.id(), differences);
+            run.queue(device.getId());
+        }
+    }
+
+    private static LinkedDevice nextDevice(ResultSet rs) throws SQLException {
+        if (!rs.next()) {
+            return null;
+        }
+        Device device = Device.builder()
+                .id(rs.getInt("id"))
+                .name(rs.getString("name"))
+                .host(rs.getString("host"))
+                .port(rs.getInt("port"))
+                .protocol(Device.Protocol.valueOf(rs.getString("protocol")))
+                .username(rs.getString("username"))
+                .passwordEncrypted(rs.getString("password_encrypted"))
+                .privateKey(rs.getString("private_key"))
+                .isActive(rs.getBoolean("is_active"))
+                .build();
+        return new LinkedDevice(rs.getInt("connection_id"), device);
+    }
+
+    /**
+     * Folds the one-row-per-parameter result into one connection at a time.
+     */
+    private static final class ConnectionCursor {
+
+        private final ResultSet rs;
+        private boolean onRow;
+
+        ConnectionCursor(ResultSet rs) throws SQLException {
+            this.rs = rs;
+            this.onRow = rs.next();
+        }
+
+        StoredConnection next() throws SQLException {
+            if (!onRow) {
+                return null;
+            }
+            int id = rs.getInt(1);
+            String name = rs.getString(2);
+            String protocol = rs.getString(3);
+            Map<String, String> parameters = new HashMap<>();
+            do {
+                String parameterName = rs.getString(4);
+                if (parameterName != null) {
+                    parameters.put(parameterName, rs.getString(5));
+                }
+                onRow = rs.next();
+            } while (onRow && rs.getInt(1) == id);
+            return new StoredConnection(id, name, protocol, parameters);
+        }
+    }
+
+    /**
+     * Findings and repairs of one reconciliation; repairs are applied whenever a
+     * batch fills up, each batch in its own transaction.
+     */
+    private final class Run {
+
+        private final boolean dryRun;
+        private final GuacamoleReconcileReportDTO report;
+        private final List<Integer> toQueue = new ArrayList<>();
+        private final List<Object[]> toDetach = new ArrayList<>();
+        private final List<Integer> orphans = new ArrayList<>();
+
+        Run(boolean dryRun) {
+            this.dryRun = dryRun;
+            this.report = GuacamoleReconcileReportDTO.builder()
+                    .dryRun(dryRun)
+                    .samples(new ArrayList<>())
+                    .build();
+        }
+
+        void found(String type, Integer deviceId, Integer connectionId, List<String> differences) {
+            switch (type) {
+                case "missing" -> report.setMissing(report.getMissing() + 1);
+                case "drifted" -> report.setDrifted(report.getDrifted() + 1);
+                case "stale" -> report.setStale(report.getStale() + 1);
+                case "duplicate" -> report.setDuplicate(report.getDuplicate() + 1);
+                default -> report.setOrphaned(report.getOrphaned() + 1);
+            }
+            Counter.builder("rdm.guacamole.reconcile.drift")
+                    .description("Differences between devices and Guacamole connections found by reconciliation")
+                    .tag("type", type)
+                    .register(meterRegistry)
+                    .increment();
+            if (report.getSamples().size() < reportLimit) {
+                report.getSamples().add(GuacamoleDriftDTO.builder()
+                        .type(type)
+                        .deviceId(deviceId)
+                        .connectionId(connectionId)
+                        .differences(differences)
+                        .build());
+            }
+        }
+
+        void queue(Integer deviceId) {
+            toQueue.add(deviceId);
+            flushIfFull();
+        }
+
+        void detach(Device device, int connectionId) {
+            toDetach.add(new Object[] {device.getId(), String.valueOf(connectionId)});
+            if (device.getIsActive()) {
+                toQueue.add(device.getId());
+            }
+            flushIfFull();
+        }
+
+        void orphan(int connectionId) {
+            if (deleteOrphans) {
+                orphans.add(connectionId);
+                flushIfFull();
+            }
+        }
+
+        private void flushIfFull() {
+            if (toQueue.size() >= batchSize || toDetach.size() >= batchSize || orphans.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!dryRun && (!toQueue.isEmpty() || !toDetach.isEmpty() || !orphans.isEmpty())) {
+                repairTransaction.executeWithoutResult(status -> {
+                    if (!toDetach.isEmpty()) {
+                        // Only if still pointing at the shared connection
+                        jdbcTemplate.batchUpdate(
+                                "UPDATE app.devices SET guacamole_conn_id = NULL WHERE id = ? AND guacamole_conn_id = ?",
+                                toDetach);
+                        entityCacheEvictor.evictDevicesAfterCommit(
+                                toDetach.stream().map(detached -> (Integer) detached[0]).toList());
+                    }
+                    guacamoleOutbox.enqueue(toQueue);
+                    report.setRepairsQueued(report.getRepairsQueued() + toQueue.size());
+                    if (!orphans.isEmpty()) {
+                        report.setOrphansDeleted(report.getOrphansDeleted() + deleteUnreferenced(orphans));
+                    }
+                });
+            }
+            toQueue.clear();
+            toDetach.clear();
+            orphans.clear();
+        }
+
+        /**
+         * Delete the connections no device points at any more; one taken since the
+         * snapshot is left alone.
+         */
+        private int deleteUnreferenced(List<Integer> connectionIds) {
+            String[] ids = connectionIds.stream().map(String::valueOf).toArray(String[]::new);
+            Set<String> referenced = new HashSet<>(jdbcTemplate.queryForList(
+                    "SELECT guacamole_conn_id FROM app.devices WHERE guacamole_conn_id = ANY(?)",
+                    String.class, (Object) ids));
+            return guacamoleService.deleteConnections(connectionIds.stream()
+                    .filter(id -> !referenced.contains(String.valueOf(id)))
+                    .toList());
+        }
+    }
+
+    private record LinkedDevice(int connectionId, Device device) {
+    }
+
+    private record StoredConnection(int id, String name, String protocol, Map<String, String> parameters) {
+    }
+}
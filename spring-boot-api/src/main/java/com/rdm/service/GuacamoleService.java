@@ -2,28 +2,47 @@ package com.rdm.service;
 
 import com.rdm.model.Device;
 import com.rdm.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 @Service
 public class GuacamoleService {
 
     private static final Logger logger = LoggerFactory.getLogger(GuacamoleService.class);
 
+    // Devices per round of statements in provisionConnections
+    private static final int PROVISION_CHUNK_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
-    private final DataSource dataSource;
+    private final DevicePasswordCodec passwordCodec;
+    private final MeterRegistry meterRegistry;
+
+    // Looked up on first use; null until found
+    private volatile Integer rootConnectionGroupId;
+    private volatile Integer serviceAccountEntityId;
 
     @Value("${guacamole.url:http://localhost/guacamole}")
     private String guacamoleBaseUrl;
@@ -32,9 +51,11 @@ public class GuacamoleService {
     @Value("${guacamole.service-account:rdm-service}")
     private String serviceAccountUsername;
 
-    public GuacamoleService(JdbcTemplate jdbcTemplate, DataSource dataSource) {
+    public GuacamoleService(JdbcTemplate jdbcTemplate, DevicePasswordCodec passwordCodec,
+                            MeterRegistry meterRegistry) {
         this.jdbcTemplate = jdbcTemplate;
-        this.dataSource = dataSource;
+        this.passwordCodec = passwordCodec;
+        this.meterRegistry = meterRegistry;
     }
 
     /**
@@ -43,100 +64,112 @@ public class GuacamoleService {
      * @param device The device to create connection for
      * @return The Guacamole connection ID
      */
-    @Transactional
     public String createGuacamoleConnection(Device device) {
         logger.info("Creating Guacamole connection for device: {}", device.getName());
 
-        try (Connection conn = dataSource.getConnection()) {
-            // Get the protocol name for Guacamole
-            String protocol = mapProtocolToGuacamole(device.getProtocol());
-
-            // Insert into guacamole_connection table
-            String insertConnectionSql = "INSERT INTO guacamole_connection (connection_name, parent_id, protocol) " +
-                    "VALUES (?, (SELECT connection_group_id FROM guacamole_connection_group WHERE connection_group_name = 'ROOT'), ?) "
-                    +
-                    "RETURNING connection_id";
-
-            Integer connectionId;
-            try (PreparedStatement stmt = conn.prepareStatement(insertConnectionSql)) {
-                stmt.setString(1, device.getName());
-                stmt.setString(2, protocol);
-
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        connectionId = rs.getInt(1);
-                    } else {
-                        throw new RuntimeException("Failed to create Guacamole connection");
-                    }
-                }
-            }
-
-            // Insert connection parameters
-            Map<String, String> parameters = buildConnectionParameters(device);
-            insertConnectionParameters(conn, connectionId, parameters);
-
-            // Grant permission to service account
-            grantConnectionPermission(conn, connectionId, serviceAccountUsername);
+        String connectionId = provisionConnections(List.of(device)).connectionIds().get(device.getId());
 
-            logger.info("Created Guacamole connection with ID: {} for device: {}", connectionId, device.getName());
-            return String.valueOf(connectionId);
-
-        } catch (SQLException e) {
-            logger.error("Error creating Guacamole connection for device: {}", device.getName(), e);
-            throw new RuntimeException("Failed to create Guacamole connection", e);
-        }
+        logger.info("Created Guacamole connection with ID: {} for device: {}", connectionId, device.getName());
+        return connectionId;
     }
 
     /**
-     * Update a Guacamole connection for a device
+     * Create or update the Guacamole connections of many devices. Devices without
+     * a connection ID, or whose connection no longer exists, get a new connection;
+     * the rest are updated in place, touching only the names, protocols and
+     * parameters that differ.
+     *
+     * Runs on the caller's transaction and connection when there is one, so the
+     * connections commit or roll back together with the device rows.
      * 
-     * @param device The device with updated information
+     * @param devices The devices to provision
+     * @return The connection ID of every device, and what was written
      */
     @Transactional
-    public void updateGuacamoleConnection(Device device) {
-        if (device.getGuacamoleConnId() == null || device.getGuacamoleConnId().isEmpty()) {
-            logger.warn("Device {} has no Guacamole connection ID, creating new connection", device.getName());
-            String connId = createGuacamoleConnection(device);
-            // Note: DeviceService should update the device with the new connection ID
-            return;
+    public ProvisionResult provisionConnections(List<Device> devices) {
+        if (devices.isEmpty()) {
+            return new ProvisionResult(Map.of(), 0, 0, 0, 0);
         }
 
-        logger.info("Updating Guacamole connection {} for device: {}", device.getGuacamoleConnId(), device.getName());
-
-        try (Connection conn = dataSource.getConnection()) {
-            Integer connectionId = Integer.parseInt(device.getGuacamoleConnId());
-
-            // Update connection name
-            String updateConnectionSql = "UPDATE guacamole_connection SET connection_name = ?, protocol = ? WHERE connection_id = ?";
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            ProvisionResult result = jdbcTemplate.execute(
+                    (ConnectionCallback<ProvisionResult>) conn -> provision(conn, devices));
+            outcome = "success";
+            return result;
+        } catch (DataAccessException e) {
+            logger.error("Error provisioning Guacamole connections for {} devices", devices.size(), e);
+            throw e;
+        } finally {
+            sample.stop(jdbcTimer("provision", outcome));
+        }
+    }
 
-            try (PreparedStatement stmt = conn.prepareStatement(updateConnectionSql)) {
-                stmt.setString(1, device.getName());
-                stmt.setString(2, mapProtocolToGuacamole(device.getProtocol()));
-                stmt.setInt(3, connectionId);
-                stmt.executeUpdate();
+    private ProvisionResult provision(Connection conn, List<Device> devices) throws SQLException {
+        Map<Integer, String> connectionIds = new LinkedHashMap<>();
+        int created = 0;
+        int updated = 0;
+        int parametersWritten = 0;
+        int parametersDeleted = 0;
+
+        for (int from = 0; from < devices.size(); from += PROVISION_CHUNK_SIZE) {
+            List<Device> chunk = devices.subList(from, Math.min(from + PROVISION_CHUNK_SIZE, devices.size()));
+
+            Map<Integer, Device> existing = new LinkedHashMap<>();
+            List<Device> toCreate = new ArrayList<>();
+            Set<Integer> knownIds = findExistingConnectionIds(conn, chunk);
+            for (Device device : chunk) {
+                Integer connectionId = parseConnectionId(device.getGuacamoleConnId());
+                if (connectionId != null && knownIds.contains(connectionId)) {
+                    existing.put(connectionId, device);
+                } else {
+                    toCreate.add(device);
+                }
             }
 
-            // Delete existing parameters
-            String deleteParamsSql = "DELETE FROM guacamole_connection_parameter WHERE connection_id = ?";
-            try (PreparedStatement stmt = conn.prepareStatement(deleteParamsSql)) {
-                stmt.setInt(1, connectionId);
-                stmt.executeUpdate();
+            // New connections: one multi-row insert, then all their parameters and grants
+            Map<Integer, Map<String, String>> newParameters = new LinkedHashMap<>();
+            for (Map.Entry<Integer, Device> entry : insertConnections(conn, toCreate).entrySet()) {
+                connectionIds.put(entry.getValue().getId(), String.valueOf(entry.getKey()));
+                newParameters.put(entry.getKey(), buildConnectionParameters(entry.getValue()));
+            }
+            parametersWritten += upsertConnectionParameters(conn, newParameters);
+            grantConnectionPermissions(conn, newParameters.keySet());
+            created += newParameters.size();
+
+            // Existing connections: diff against what is stored
+            if (!existing.isEmpty()) {
+                updated += updateConnections(conn, existing);
+                Map<Integer, Map<String, String>> stored = loadConnectionParameters(conn, existing.keySet());
+                Map<Integer, Map<String, String>> changed = new LinkedHashMap<>();
+                Map<Integer, List<String>> removed = new LinkedHashMap<>();
+                for (Map.Entry<Integer, Device> entry : existing.entrySet()) {
+                    Integer connectionId = entry.getKey();
+                    connectionIds.put(entry.getValue().getId(), String.valueOf(connectionId));
+                    Map<String, String> desired = buildConnectionParameters(entry.getValue());
+                    Map<String, String> current = stored.getOrDefault(connectionId, Map.of());
+                    desired.forEach((name, value) -> {
+                        if (!value.equals(current.get(name))) {
+                            changed.computeIfAbsent(connectionId, k -> new HashMap<>()).put(name, value);
+                        }
+                    });
+                    current.keySet().stream()
+                            .filter(name -> !desired.containsKey(name))
+                            .forEach(name -> removed.computeIfAbsent(connectionId, k -> new ArrayList<>()).add(name));
+                }
+                parametersWritten += upsertConnectionParameters(conn, changed);
+                parametersDeleted += deleteConnectionParameters(conn, removed);
             }
-
-            // Insert updated parameters
-            Map<String, String> parameters = buildConnectionParameters(device);
-            insertConnectionParameters(conn, connectionId, parameters);
-
-            logger.info("Updated Guacamole connection {} for device: {}", connectionId, device.getName());
-
-        } catch (SQLException e) {
-            logger.error("Error updating Guacamole connection for device: {}", device.getName(), e);
-            throw new RuntimeException("Failed to update Guacamole connection", e);
         }
+
+        logger.info("Provisioned {} Guacamole connections: {} created, {} updated, {} parameters written, {} deleted",
+                devices.size(), created, updated, parametersWritten, parametersDeleted);
+        return new ProvisionResult(connectionIds, created, updated, parametersWritten, parametersDeleted);
     }
 
     /**
-     * Delete a Guacamole connection
+     * Delete a Guacamole connection, on the caller's transaction when there is one
      * 
      * @param guacamoleConnId The Guacamole connection ID
      */
@@ -149,35 +182,63 @@ public class GuacamoleService {
 
         logger.info("Deleting Guacamole connection: {}", guacamoleConnId);
 
-        try (Connection conn = dataSource.getConnection()) {
-            Integer connectionId = Integer.parseInt(guacamoleConnId);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        Integer connectionId = parseConnectionId(guacamoleConnId);
+        if (connectionId == null) {
+            logger.warn("Not deleting Guacamole connection with invalid ID: {}", guacamoleConnId);
+            return;
+        }
+
+        try {
 
             // Delete connection parameters first (foreign key constraint)
-            String deleteParamsSql = "DELETE FROM guacamole_connection_parameter WHERE connection_id = ?";
-            try (PreparedStatement stmt = conn.prepareStatement(deleteParamsSql)) {
-                stmt.setInt(1, connectionId);
-                stmt.executeUpdate();
-            }
+            jdbcTemplate.update("DELETE FROM guacamole_connection_parameter WHERE connection_id = ?", connectionId);
 
             // Delete connection permissions
-            String deletePermsSql = "DELETE FROM guacamole_connection_permission WHERE connection_id = ?";
-            try (PreparedStatement stmt = conn.prepareStatement(deletePermsSql)) {
-                stmt.setInt(1, connectionId);
-                stmt.executeUpdate();
-            }
+            jdbcTemplate.update("DELETE FROM guacamole_connection_permission WHERE connection_id = ?", connectionId);
 
             // Delete the connection
-            String deleteConnectionSql = "DELETE FROM guacamole_connection WHERE connection_id = ?";
-            try (PreparedStatement stmt = conn.prepareStatement(deleteConnectionSql)) {
-                stmt.setInt(1, connectionId);
-                stmt.executeUpdate();
-            }
+            jdbcTemplate.update("DELETE FROM guacamole_connection WHERE connection_id = ?", connectionId);
 
             logger.info("Deleted Guacamole connection: {}", connectionId);
+            outcome = "success";
 
-        } catch (SQLException e) {
+        } catch (DataAccessException e) {
             logger.error("Error deleting Guacamole connection: {}", guacamoleConnId, e);
-            throw new RuntimeException("Failed to delete Guacamole connection", e);
+            throw e;
+        } finally {
+            sample.stop(jdbcTimer("delete", outcome));
+        }
+    }
+
+    /**
+     * Delete many Guacamole connections with their parameters and permissions,
+     * on the caller's transaction when there is one
+     *
+     * @return number of connections deleted
+     */
+    @Transactional
+    public int deleteConnections(Collection<Integer> connectionIds) {
+        if (connectionIds.isEmpty()) {
+            return 0;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        Integer[] ids = connectionIds.toArray(Integer[]::new);
+        try {
+            jdbcTemplate.update("DELETE FROM guacamole_connection_parameter WHERE connection_id = ANY(?)", (Object) ids);
+            jdbcTemplate.update("DELETE FROM guacamole_connection_permission WHERE connection_id = ANY(?)", (Object) ids);
+            int deleted = jdbcTemplate.update("DELETE FROM guacamole_connection WHERE connection_id = ANY(?)", (Object) ids);
+            logger.info("Deleted {} Guacamole connections", deleted);
+            outcome = "success";
+            return deleted;
+        } catch (DataAccessException e) {
+            logger.error("Error deleting {} Guacamole connections", ids.length, e);
+            throw e;
+        } finally {
+            sample.stop(jdbcTimer("delete", outcome));
         }
     }
 
@@ -216,7 +277,7 @@ public class GuacamoleService {
     /**
      * Map device protocol to Guacamole protocol name
      */
-    private String mapProtocolToGuacamole(Device.Protocol protocol) {
+    String mapProtocolToGuacamole(Device.Protocol protocol) {
         return switch (protocol) {
             case rdp -> "rdp";
             case vnc -> "vnc";
@@ -227,7 +288,7 @@ public class GuacamoleService {
     /**
      * Build connection parameters based on device and protocol
      */
-    private Map<String, String> buildConnectionParameters(Device device) {
+    public Map<String, String> buildConnectionParameters(Device device) {
         Map<String, String> params = new HashMap<>();
 
         switch (device.getProtocol()) {
@@ -238,8 +299,7 @@ public class GuacamoleService {
                     params.put("username", device.getUsername());
                 }
                 if (device.getPasswordEncrypted() != null) {
-                    // Decrypt password (for now, it's plaintext)
-                    params.put("password", device.getPasswordEncrypted());
+                    params.put("password", passwordCodec.decode(device.getPasswordEncrypted()));
                 }
                 params.put("security", "any");
                 params.put("ignore-cert", "true");
@@ -261,7 +321,7 @@ public class GuacamoleService {
                     params.put("username", device.getUsername());
                 }
                 if (device.getPasswordEncrypted() != null) {
-                    params.put("password", device.getPasswordEncrypted());
+                    params.put("password", passwordCodec.decode(device.getPasswordEncrypted()));
                 }
                 params.put("color-depth", "24");
                 params.put("dpi", "96");
@@ -274,7 +334,7 @@ public class GuacamoleService {
                     params.put("username", device.getUsername());
                 }
                 if (device.getPasswordEncrypted() != null) {
-                    params.put("password", device.getPasswordEncrypted());
+                    params.put("password", passwordCodec.decode(device.getPasswordEncrypted()));
                 }
                 if (device.getPrivateKey() != null) {
                     params.put("private-key", device.getPrivateKey());
@@ -288,67 +348,269 @@ public class GuacamoleService {
         return params;
     }
 
+    private Set<Integer> findExistingConnectionIds(Connection conn, List<Device> devices) throws SQLException {
+        List<Integer> ids = devices.stream()
+                .map(device -> parseConnectionId(device.getGuacamoleConnId()))
+                .filter(Objects::nonNull)
+                .toList();
+        Set<Integer> existing = new HashSet<>();
+        if (ids.isEmpty()) {
+            return existing;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT connection_id FROM guacamole_connection WHERE connection_id = ANY(?)")) {
+            stmt.setArray(1, conn.createArrayOf("integer", ids.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getInt(1));
+                }
+            }
+        }
+        return existing;
+    }
+
     /**
-     * Insert connection parameters into guacamole_connection_parameter table
+     * Insert one connection per device in a single statement.
+     * 
+     * @return the devices keyed by their new connection ID
      */
-    private void insertConnectionParameters(Connection conn, Integer connectionId, Map<String, String> parameters)
-            throws SQLException {
-        String insertParamSql = "INSERT INTO guacamole_connection_parameter (connection_id, parameter_name, parameter_value) "
-                +
-                "VALUES (?, ?, ?)";
-
-        try (PreparedStatement stmt = conn.prepareStatement(insertParamSql)) {
-            for (Map.Entry<String, String> entry : parameters.entrySet()) {
-                stmt.setInt(1, connectionId);
-                stmt.setString(2, entry.getKey());
-                stmt.setString(3, entry.getValue());
-                stmt.addBatch();
+    private Map<Integer, Device> insertConnections(Connection conn, List<Device> devices) throws SQLException {
+        Map<Integer, Device> inserted = new LinkedHashMap<>();
+        if (devices.isEmpty()) {
+            return inserted;
+        }
+
+        // IDs are taken from the sequence up front and inserted explicitly, so each
+        // connection is tied to its device by position. Device names are not unique,
+        // and connection_name is not either while parent_id is NULL.
+        List<Integer> ids = new ArrayList<>(devices.size());
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT nextval(pg_get_serial_sequence('guacamole_connection', 'connection_id')) " +
+                        "FROM generate_series(1, ?)")) {
+            stmt.setInt(1, devices.size());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
             }
-            stmt.executeBatch();
         }
+
+        String[] names = new String[devices.size()];
+        String[] protocols = new String[devices.size()];
+        for (int i = 0; i < names.length; i++) {
+            Device device = devices.get(i);
+            names[i] = device.getName();
+            protocols[i] = mapProtocolToGuacamole(device.getProtocol());
+            inserted.put(ids.get(i), device);
+        }
+
+        String sql = "INSERT INTO guacamole_connection (connection_id, connection_name, parent_id, protocol) " +
+                "SELECT t.id, t.name, ?, t.protocol " +
+                "FROM unnest(?::integer[], ?::varchar[], ?::varchar[]) AS t(id, name, protocol)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, getRootConnectionGroupId(conn), Types.INTEGER);
+            stmt.setArray(2, conn.createArrayOf("integer", ids.toArray()));
+            stmt.setArray(3, conn.createArrayOf("varchar", names));
+            stmt.setArray(4, conn.createArrayOf("varchar", protocols));
+            stmt.executeUpdate();
+        }
+        return inserted;
     }
 
     /**
-     * Grant connection permission to a user
+     * Update name and protocol of existing connections where they differ.
+     * 
+     * @return number of connections changed
      */
-    private void grantConnectionPermission(Connection conn, Integer connectionId, String username)
-            throws SQLException {
-        // Get user entity ID
-        String getUserSql = "SELECT entity_id FROM guacamole_entity WHERE name = ? AND type = 'USER'";
-        Integer entityId = null;
+    private int updateConnections(Connection conn, Map<Integer, Device> devices) throws SQLException {
+        Integer[] ids = new Integer[devices.size()];
+        String[] names = new String[devices.size()];
+        String[] protocols = new String[devices.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Device> entry : devices.entrySet()) {
+            ids[i] = entry.getKey();
+            names[i] = entry.getValue().getName();
+            protocols[i] = mapProtocolToGuacamole(entry.getValue().getProtocol());
+            i++;
+        }
 
-        try (PreparedStatement stmt = conn.prepareStatement(getUserSql)) {
-            stmt.setString(1, username);
+        String sql = "UPDATE guacamole_connection c SET connection_name = t.name, protocol = t.protocol " +
+                "FROM unnest(?::integer[], ?::varchar[], ?::varchar[]) AS t(id, name, protocol) " +
+                "WHERE c.connection_id = t.id " +
+                "AND (c.connection_name <> t.name OR c.protocol <> t.protocol)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setArray(1, conn.createArrayOf("integer", ids));
+            stmt.setArray(2, conn.createArrayOf("varchar", names));
+            stmt.setArray(3, conn.createArrayOf("varchar", protocols));
+            return stmt.executeUpdate();
+        }
+    }
+
+    private Map<Integer, Map<String, String>> loadConnectionParameters(Connection conn, Collection<Integer> connectionIds)
+            throws SQLException {
+        Map<Integer, Map<String, String>> parameters = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT connection_id, parameter_name, parameter_value FROM guacamole_connection_parameter " +
+                        "WHERE connection_id = ANY(?)")) {
+            stmt.setArray(1, conn.createArrayOf("integer", connectionIds.toArray()));
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    entityId = rs.getInt(1);
+                while (rs.next()) {
+                    parameters.computeIfAbsent(rs.getInt(1), k -> new HashMap<>()).put(rs.getString(2), rs.getString(3));
                 }
             }
         }
+        return parameters;
+    }
+
+    /**
+     * Insert or overwrite connection parameters in a single statement.
+     * 
+     * @return number of parameters written
+     */
+    private int upsertConnectionParameters(Connection conn, Map<Integer, Map<String, String>> parameters)
+            throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        parameters.forEach((connectionId, params) -> params.forEach((name, value) -> {
+            ids.add(connectionId);
+            names.add(name);
+            values.add(value);
+        }));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String sql = "INSERT INTO guacamole_connection_parameter (connection_id, parameter_name, parameter_value) " +
+                "SELECT * FROM unnest(?::integer[], ?::varchar[], ?::varchar[]) " +
+                "ON CONFLICT (connection_id, parameter_name) DO UPDATE SET parameter_value = EXCLUDED.parameter_value";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setArray(1, conn.createArrayOf("integer", ids.toArray()));
+            stmt.setArray(2, conn.createArrayOf("varchar", names.toArray()));
+            stmt.setArray(3, conn.createArrayOf("varchar", values.toArray()));
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Delete the named parameters in a single statement.
+     * 
+     * @return number of parameters deleted
+     */
+    private int deleteConnectionParameters(Connection conn, Map<Integer, List<String>> parameters)
+            throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        parameters.forEach((connectionId, params) -> params.forEach(name -> {
+            ids.add(connectionId);
+            names.add(name);
+        }));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String sql = "DELETE FROM guacamole_connection_parameter p " +
+                "USING unnest(?::integer[], ?::varchar[]) AS t(id, name) " +
+                "WHERE p.connection_id = t.id AND p.parameter_name = t.name";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setArray(1, conn.createArrayOf("integer", ids.toArray()));
+            stmt.setArray(2, conn.createArrayOf("varchar", names.toArray()));
+            return stmt.executeUpdate();
+        }
+    }
 
+    /**
+     * Grant READ and UPDATE on the connections to the service account
+     */
+    private void grantConnectionPermissions(Connection conn, Collection<Integer> connectionIds) throws SQLException {
+        if (connectionIds.isEmpty()) {
+            return;
+        }
+        Integer entityId = getServiceAccountEntityId(conn);
         if (entityId == null) {
-            logger.warn("Guacamole user {} not found, skipping permission grant", username);
+            logger.warn("Guacamole user {} not found, skipping permission grant", serviceAccountUsername);
             return;
         }
 
-        // Grant READ and UPDATE permissions (READ = 1, UPDATE = 2)
-        String grantPermSql = "INSERT INTO guacamole_connection_permission (entity_id, connection_id, permission) " +
-                "VALUES (?, ?, ?) ON CONFLICT DO NOTHING";
-
-        try (PreparedStatement stmt = conn.prepareStatement(grantPermSql)) {
-            // READ permission
+        String sql = "INSERT INTO guacamole_connection_permission (entity_id, connection_id, permission) " +
+                "SELECT ?, c.id, p.permission::guacamole_object_permission_type " +
+                "FROM unnest(?::integer[]) AS c(id) CROSS JOIN (VALUES ('READ'), ('UPDATE')) AS p(permission) " +
+                "ON CONFLICT DO NOTHING";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, entityId);
-            stmt.setInt(2, connectionId);
-            stmt.setString(3, "READ");
-            stmt.addBatch();
+            stmt.setArray(2, conn.createArrayOf("integer", connectionIds.toArray()));
+            stmt.executeUpdate();
+        }
+    }
 
-            // UPDATE permission (allows connection)
-            stmt.setInt(1, entityId);
-            stmt.setInt(2, connectionId);
-            stmt.setString(3, "UPDATE");
-            stmt.addBatch();
+    /**
+     * ID of the connection group named ROOT, or null to create connections at
+     * Guacamole's implicit root. Cached once found.
+     */
+    private Integer getRootConnectionGroupId(Connection conn) throws SQLException {
+        Integer cached = rootConnectionGroupId;
+        if (cached == null) {
+            cached = querySingleId(conn,
+                    "SELECT connection_group_id FROM guacamole_connection_group WHERE connection_group_name = 'ROOT'",
+                    null);
+            rootConnectionGroupId = cached;
+        }
+        return cached;
+    }
 
-            stmt.executeBatch();
+    /**
+     * Entity ID of the service account, cached once found.
+     */
+    private Integer getServiceAccountEntityId(Connection conn) throws SQLException {
+        Integer cached = serviceAccountEntityId;
+        if (cached == null) {
+            cached = querySingleId(conn, "SELECT entity_id FROM guacamole_entity WHERE name = ? AND type = 'USER'",
+                    serviceAccountUsername);
+            serviceAccountEntityId = cached;
         }
+        return cached;
+    }
+
+    private static Integer querySingleId(Connection conn, String sql, String param) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if (param != null) {
+                stmt.setString(1, param);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    private Timer jdbcTimer(String operation, String outcome) {
+        return Timer.builder("rdm.guacamole.jdbc")
+                .description("Guacamole database operations, including commit")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static Integer parseConnectionId(String guacamoleConnId) {
+        if (guacamoleConnId == null || guacamoleConnId.isEmpty()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(guacamoleConnId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Outcome of {@link #provisionConnections(List)}
+     * 
+     * @param connectionIds     Guacamole connection ID by device ID
+     * @param created           Connections created
+     * @param updated           Existing connections whose name or protocol changed
+     * @param parametersWritten Parameters inserted or overwritten
+     * @param parametersDeleted Parameters removed
+     */
+    public record ProvisionResult(Map<Integer, String> connectionIds, int created, int updated,
+            int parametersWritten, int parametersDeleted) {
     }
 }
@@ -0,0 +1,82 @@
+package com.rdm.service;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves device host names off the caller's thread. Lookups run on a small
+ * fixed pool with a bounded queue, successful answers are cached for a short
+ * TTL, and concurrent requests for the same host share one lookup. A lookup
+ * that fails, times out or finds the pool saturated resolves to null.
+ */
+class HostResolver implements Closeable {
+
+    private final ThreadPoolExecutor executor;
+    private final long ttlNanos;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    HostResolver(int threads, int queueCapacity, long ttlNanos, ThreadFactory threadFactory) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory);
+        this.ttlNanos = ttlNanos;
+    }
+
+    /**
+     * Address of the host, or null if it could not be resolved within the timeout.
+     * The returned future always completes within the timeout.
+     */
+    CompletableFuture<InetAddress> resolve(String host, long timeoutNanos) {
+        long now = System.nanoTime();
+        Entry entry = cache.compute(host, (key, cached) ->
+                cached != null && cached.usable(now) ? cached : new Entry(lookup(key), now + ttlNanos));
+        // A copy, so one caller's timeout does not cut the shared lookup short for the rest
+        return entry.lookup().copy().completeOnTimeout(null, timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Drop expired answers, so hosts no longer probed do not stay cached.
+     */
+    void evictExpired() {
+        long now = System.nanoTime();
+        cache.values().removeIf(entry -> !entry.usable(now));
+    }
+
+    @Override
+    public void close() {
+        // Lookups blocked in the OS resolver cannot be interrupted; their threads end when it returns
+        executor.shutdownNow();
+    }
+
+    private CompletableFuture<InetAddress> lookup(String host) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return InetAddress.getByName(host);
+                } catch (UnknownHostException | SecurityException e) {
+                    return null;
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private record Entry(CompletableFuture<InetAddress> lookup, long expiresAt) {
+        /**
+         * Still in flight, or answered with an address that has not expired.
+         * Failed lookups are not reused, so a host is tried again next round.
+         */
+        boolean usable(long now) {
+            return !lookup.isDone() || (lookup.getNow(null) != null && now - expiresAt < 0);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.rdm.service;
+
+import com.rdm.model.User;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Change counters for the tables behind the device and user listings, used to
+ * build ETags without running the listing query. Services call these methods
+ * next to each device or user write. Grants are written outside these services
+ * too, so non-admin device listings take the database grant version from
+ * {@link PermissionIndex} instead, which lags it by at most one check interval.
+ *
+ * Each change bumps its counter when it is made and again after commit, so a
+ * listing read between the two can never be tagged with the final version.
+ * Counters are per instance and start from a random epoch, so tags from before
+ * a restart never match.
+ */
+@Component
+public class ListingVersions {
+
+    private final PermissionIndex permissionIndex;
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private final AtomicLong devices = new AtomicLong();
+    private final AtomicLong users = new AtomicLong();
+
+    public ListingVersions(PermissionIndex permissionIndex) {
+        this.permissionIndex = permissionIndex;
+    }
+
+    public void devicesChanged() {
+        bump(devices);
+    }
+
+    public void usersChanged() {
+        bump(users);
+    }
+
+    /**
+     * ETag of a device listing. Non-admin listings depend on grants, and all of
+     * them on who is asking and with which parameters. Built before the listing
+     * is read, so a grant change in between only causes one extra full response.
+     */
+    public String deviceListTag(Integer userId, String role, String query) {
+        String versions = "d" + devices.get();
+        if (!User.Role.admin.name().equals(role)) {
+            versions += "." + permissionIndex.version();
+        }
+        return tag(versions, userId + role, query);
+    }
+
+    /**
+     * ETag of a user listing.
+     */
+    public String userListTag(Integer userId, String query) {
+        return tag("u" + users.get(), String.valueOf(userId), query);
+    }
+
+    private String tag(String versions, String principal, String query) {
+        int scope = (principal + "?" + (query != null ? query : "")).hashCode();
+        return "W/\"" + epoch + "-" + versions + "-" + Integer.toHexString(scope) + "\"";
+    }
+
+    private static void bump(AtomicLong counter) {
+        counter.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    counter.incrementAndGet();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.rdm.service;
+
+import com.rdm.dto.DeviceDTO;
+
+import java.util.Map;
+
+/**
+ * Application event pushed to live dashboards by {@link LiveEventBroadcaster}.
+ *
+ * @param type     event name sent to clients, e.g. {@code device.status}
+ * @param deviceId device the event is about; subscribers only get it if they can view the device
+ * @param userId   user a connection or waitlist event belongs to, null for device events
+ * @param data     payload serialized as the event data
+ */
+public record LiveEvent(String type, Integer deviceId, Integer userId, Object data) {
+
+    public static final String DEVICE_CREATED = "device.created";
+    public static final String DEVICE_UPDATED = "device.updated";
+    public static final String DEVICE_DELETED = "device.deleted";
+    public static final String DEVICE_STATUS = "device.status";
+    public static final String CONNECTION_STARTED = "connection.started";
+    public static final String CONNECTION_ENDED = "connection.ended";
+    public static final String WAITLIST_GRANTED = "waitlist.granted";
+
+    public static LiveEvent device(String type, DeviceDTO device) {
+        return new LiveEvent(type, device.getId(), null, device);
+    }
+
+    public static LiveEvent deviceDeleted(Integer deviceId) {
+        return new LiveEvent(DEVICE_DELETED, deviceId, null, Map.of("id", deviceId));
+    }
+
+    public static LiveEvent deviceStatus(Integer deviceId, String status) {
+        return new LiveEvent(DEVICE_STATUS, deviceId, null, Map.of("id", deviceId, "status", status));
+    }
+
+    public static LiveEvent connection(String type, Integer userId, Integer deviceId, Map<String, Object> data) {
+        return new LiveEvent(type, deviceId, userId, data);
+    }
+
+    public boolean isConnectionEvent() {
+        return userId != null;
+    }
+}
@@ -0,0 +1,202 @@
+package com.rdm.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rdm.model.User;
+import com.rdm.model.UserDevice;
+import com.rdm.security.UserPrincipal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fans {@link LiveEvent}s out to every open server-sent event stream.
+ *
+ * Each event is serialized once, after the publishing transaction commits, and
+ * offered to the bounded queue of every subscriber allowed to see it. Queues
+ * are drained by a small shared pool, so a slow client only delays itself.
+ * A subscriber whose queue overflows loses its backlog and gets a
+ * {@code resync} event telling it to reload instead.
+ */
+@Component
+public class LiveEventBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveEventBroadcaster.class);
+
+    private static final Set<DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("heartbeat").build();
+    private static final Set<DataWithMediaType> RESYNC = SseEmitter.event().name("resync").data("{}").build();
+    private static final Set<DataWithMediaType> READY = SseEmitter.event().name("ready").data("{}").build();
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final PermissionIndex permissionIndex;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService dispatcher;
+    private final Counter droppedCounter;
+
+    @Value("${rdm.events.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${rdm.events.emitter-timeout:PT30M}")
+    private Duration emitterTimeout;
+
+    public LiveEventBroadcaster(PermissionIndex permissionIndex,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${rdm.events.dispatch-threads:4}") int dispatchThreads) {
+        this.permissionIndex = permissionIndex;
+        this.objectMapper = objectMapper;
+        this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, daemonThreadFactory());
+        this.droppedCounter = Counter.builder("rdm.events.dropped")
+                .description("Live events discarded because a subscriber's buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("rdm.events.subscribers", subscribers, Set::size)
+                .description("Open live event streams")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Open an event stream for the given user. Admins receive every event;
+     * other users only events for devices they can view and their own connections.
+     */
+    public SseEmitter subscribe(UserPrincipal principal) {
+        SseEmitter emitter = new SseEmitter(emitterTimeout.toMillis());
+        Subscriber subscriber = new Subscriber(principal.getId(), principal.getRole() == User.Role.admin,
+                emitter, new ArrayBlockingQueue<>(bufferSize));
+
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> {
+            subscribers.remove(subscriber);
+            emitter.complete();
+        });
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        subscribers.add(subscriber);
+        offer(subscriber, READY);
+        logger.debug("User {} subscribed to live events, {} open streams", principal.getId(), subscribers.size());
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLiveEvent(LiveEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        Set<DataWithMediaType> frame;
+        try {
+            frame = SseEmitter.event()
+                    .name(event.type())
+                    .data(objectMapper.writeValueAsString(event.data()))
+                    .build();
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to serialize live event {}", event.type(), e);
+            return;
+        }
+
+        for (Subscriber subscriber : subscribers) {
+            if (canSee(subscriber, event)) {
+                offer(subscriber, frame);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rdm.events.heartbeat-interval:PT25S}")
+    public void sendHeartbeats() {
+        // Keeps proxies from closing idle streams and detects clients that went away
+        for (Subscriber subscriber : subscribers) {
+            offer(subscriber, HEARTBEAT);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter().complete();
+        }
+        subscribers.clear();
+    }
+
+    private boolean canSee(Subscriber subscriber, LiveEvent event) {
+        if (subscriber.admin()) {
+            return true;
+        }
+        if (event.isConnectionEvent()) {
+            return event.userId().equals(subscriber.userId());
+        }
+        return permissionIndex.hasPermission(subscriber.userId(), event.deviceId(), UserDevice.PermissionType.view);
+    }
+
+    private void offer(Subscriber subscriber, Set<DataWithMediaType> frame) {
+        if (!subscriber.queue().offer(frame)) {
+            // Too far behind to catch up event by event; let the client reload instead
+            droppedCounter.increment(subscriber.queue().size() + 1);
+            subscriber.queue().clear();
+            subscriber.queue().offer(RESYNC);
+        }
+        if (subscriber.scheduled().compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            Set<DataWithMediaType> frame = subscriber.queue().poll();
+            if (frame == null) {
+                subscriber.scheduled().set(false);
+                // Re-check: an offer may have seen the flag still set and not scheduled a drain
+                if (subscriber.queue().isEmpty() || !subscriber.scheduled().compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                subscriber.emitter().send(frame);
+            } catch (IOException | IllegalStateException e) {
+                // Client disconnected or the emitter already completed
+                subscribers.remove(subscriber);
+                subscriber.queue().clear();
+                subscriber.emitter().completeWithError(e);
+                return;
+            }
+        }
+    }
+
+    private static CustomizableThreadFactory daemonThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("live-events-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    private record Subscriber(Integer userId, boolean admin, SseEmitter emitter,
+                              BlockingQueue<Set<DataWithMediaType>> queue, AtomicBoolean scheduled) {
+
+        Subscriber(Integer userId, boolean admin, SseEmitter emitter, BlockingQueue<Set<DataWithMediaType>> queue) {
+            this(userId, admin, emitter, queue, new AtomicBoolean());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.rdm.service;
+
+import com.rdm.dto.CursorPage;
+import com.rdm.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Position in a log listing ordered by (timestamp DESC, id DESC). Encoded as
+ * an opaque URL-safe string so clients cannot depend on its contents.
+ */
+public record LogCursor(LocalDateTime timestamp, Integer id) {
+
+    /** Sorts after every real row, used for the first page. */
+    static final LogCursor START = new LogCursor(LocalDateTime.of(9999, 12, 31, 0, 0), Integer.MAX_VALUE);
+
+    static final int MAX_PAGE_SIZE = 100;
+
+    public String encode() {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the decoded cursor, or {@link #START} when none was given
+     */
+    public static LogCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return START;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new LogCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Integer.valueOf(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    static void validatePageSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Build a page from rows fetched with limit {@code size + 1}; the extra row
+     * only signals that another page exists.
+     */
+    static <E, T> CursorPage<T> toPage(List<E> rows, int size, Function<E, LogCursor> position,
+            Function<E, T> mapper) {
+        boolean hasNext = rows.size() > size;
+        List<E> pageRows = hasNext ? rows.subList(0, size) : rows;
+        return CursorPage.<T>builder()
+                .content(pageRows.stream().map(mapper).toList())
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? position.apply(pageRows.get(size - 1)).encode() : null)
+                .build();
+    }
+}
@@ -0,0 +1,79 @@
+package com.rdm.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Maintains the monthly partitions of app.connection_logs and app.audit_logs
+ * (see migration 006): creates partitions ahead of time so new rows never land
+ * in the default partition, and drops or archives partitions older than the
+ * configured retention.
+ */
+@Service
+public class PartitionMaintenanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionMaintenanceService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${rdm.retention.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${rdm.retention.connection-logs.keep-months:0}")
+    private int connectionLogsKeepMonths;
+
+    @Value("${rdm.retention.audit-logs.keep-months:0}")
+    private int auditLogsKeepMonths;
+
+    @Value("${rdm.retention.mode:drop}")
+    private String mode;
+
+    @Value("${rdm.retention.archive-schema:archive}")
+    private String archiveSchema;
+
+    public PartitionMaintenanceService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        maintainPartitions();
+    }
+
+    @Scheduled(cron = "${rdm.retention.cron:0 15 3 * * *}")
+    public void maintainPartitions() {
+        maintain("connection_logs", "connection_start", connectionLogsKeepMonths);
+        maintain("audit_logs", "timestamp", auditLogsKeepMonths);
+    }
+
+    private void maintain(String table, String partitionKey, int keepMonths) {
+        try {
+            List<String> created = jdbcTemplate.queryForList(
+                    "SELECT app.ensure_monthly_partitions(?, ?, ?)", String.class, table, partitionKey, monthsAhead);
+            if (!created.isEmpty()) {
+                logger.info("Created partitions {}", created);
+            }
+
+            if (keepMonths > 0) {
+                String archiveTo = "archive".equalsIgnoreCase(mode) ? archiveSchema : null;
+                List<String> removed = jdbcTemplate.queryForList(
+                        "SELECT app.apply_partition_retention(?, ?, ?)", String.class, table, keepMonths, archiveTo);
+                if (!removed.isEmpty()) {
+                    logger.info("{} partitions older than {} months: {}",
+                            archiveTo != null ? "Archived" : "Dropped", keepMonths, removed);
+                }
+            }
+        } catch (Exception e) {
+            // Not fatal: the default partition catches rows until the next run succeeds
+            logger.error("Partition maintenance failed for {}", table, e);
+        }
+    }
+}
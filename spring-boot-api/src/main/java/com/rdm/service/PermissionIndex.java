@@ -0,0 +1,179 @@
+package com.rdm.service;
+
+import com.rdm.model.UserDevice;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of effective device permissions.
+ *
+ * Direct user grants, group grants and group memberships are held in memory and
+ * merged lazily into one {@link DevicePermissionTable} per user. A permission
+ * check is a table lookup with no queries, except that at most once per check
+ * interval one caller reads {@code app.grant_version}, which a trigger bumps on
+ * every write to the grant tables, and reloads the index if it moved. A revoked
+ * grant therefore stops applying within one interval, whoever wrote it.
+ */
+@Component
+public class PermissionIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PermissionIndex.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long checkIntervalNanos;
+    private final AtomicLong nextCheck = new AtomicLong(System.nanoTime());
+
+    private volatile Snapshot snapshot;
+
+    public PermissionIndex(JdbcTemplate jdbcTemplate,
+            @Value("${rdm.permissions.index.version-check-interval:PT1S}") Duration checkInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.checkIntervalNanos = checkInterval.toNanos();
+    }
+
+    public boolean hasPermission(Integer userId, Integer deviceId, UserDevice.PermissionType requiredPermission) {
+        if (userId == null || deviceId == null) {
+            return false;
+        }
+        return getEffectivePermissions(userId).get(deviceId) >= rank(requiredPermission.name());
+    }
+
+    /**
+     * Grant version the index currently reflects, checked against the database
+     * like a permission lookup.
+     */
+    public long version() {
+        return current().version();
+    }
+
+    DevicePermissionTable getEffectivePermissions(Integer userId) {
+        Snapshot current = current();
+        return current.effective().computeIfAbsent(userId, current::computeEffective);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reload();
+    }
+
+    /**
+     * Current snapshot, reloaded first if the grant version moved since it was
+     * loaded. Only the caller that claims the next check slot queries; the others
+     * keep using the snapshot they have.
+     */
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return reload();
+        }
+        long now = System.nanoTime();
+        long next = nextCheck.get();
+        if (now - next < 0 || !nextCheck.compareAndSet(next, now + checkIntervalNanos)) {
+            return current;
+        }
+        return readVersion() == current.version() ? current : reload();
+    }
+
+    /**
+     * Rebuild the whole index from the grant tables. The version is read first,
+     * so the tables are at least as new as the version recorded with them; a
+     * write in between only costs one more reload.
+     */
+    private synchronized Snapshot reload() {
+        long version = readVersion();
+        Snapshot current = snapshot;
+        if (current != null && current.version() == version) {
+            return current;
+        }
+
+        Map<Integer, Map<Integer, Byte>> direct = new HashMap<>();
+        Map<Integer, Map<Integer, Byte>> groups = new HashMap<>();
+        Map<Integer, Set<Integer>> memberships = new HashMap<>();
+
+        jdbcTemplate.query("SELECT user_id, device_id, permission FROM app.user_devices", rs -> {
+            putMax(direct, rs.getInt(1), rs.getInt(2), rank(rs.getString(3)));
+        });
+        jdbcTemplate.query("SELECT group_id, device_id, permission FROM app.group_devices", rs -> {
+            putMax(groups, rs.getInt(1), rs.getInt(2), rank(rs.getString(3)));
+        });
+        jdbcTemplate.query("SELECT group_id, user_id FROM app.group_members", rs -> {
+            memberships.computeIfAbsent(rs.getInt(2), k -> new HashSet<>()).add(rs.getInt(1));
+        });
+
+        Snapshot loaded = new Snapshot(version, direct, groups, memberships, new ConcurrentHashMap<>());
+        snapshot = loaded;
+        nextCheck.set(System.nanoTime() + checkIntervalNanos);
+        logger.debug("Permission index loaded at grant version {}: {} users with direct grants, "
+                + "{} groups with grants", version, direct.size(), groups.size());
+        return loaded;
+    }
+
+    private long readVersion() {
+        Long version = jdbcTemplate.queryForObject("SELECT version FROM app.grant_version", Long.class);
+        return version != null ? version : 0;
+    }
+
+    private static void putMax(Map<Integer, Map<Integer, Byte>> target, int ownerId, int deviceId, byte rank) {
+        target.computeIfAbsent(ownerId, k -> new HashMap<>())
+                .merge(deviceId, rank, (a, b) -> a >= b ? a : b);
+    }
+
+    /**
+     * Permission hierarchy: control > write > read > view
+     */
+    static byte rank(String permission) {
+        return switch (permission) {
+            case "view" -> 1;
+            case "read" -> 2;
+            case "write" -> 3;
+            case "control" -> 4;
+            default -> 0;
+        };
+    }
+
+    /**
+     * Grant relations as of one grant version, with the per-user tables merged
+     * from them. Replaced as a whole on reload, so a table is never computed from
+     * one version and cached under another.
+     */
+    private record Snapshot(long version,
+                            Map<Integer, Map<Integer, Byte>> directGrants,
+                            Map<Integer, Map<Integer, Byte>> groupGrants,
+                            Map<Integer, Set<Integer>> userGroups,
+                            ConcurrentHashMap<Integer, DevicePermissionTable> effective) {
+
+        /**
+         * A direct grant on a device decides alone, whatever the user's groups
+         * grant on it; devices without one get the highest of the group grants.
+         */
+        DevicePermissionTable computeEffective(Integer userId) {
+            Map<Integer, Byte> direct = directGrants.getOrDefault(userId, Map.of());
+            Map<Integer, Byte> merged = new HashMap<>();
+            for (Integer groupId : userGroups.getOrDefault(userId, Set.of())) {
+                Map<Integer, Byte> grants = groupGrants.get(groupId);
+                if (grants != null) {
+                    grants.forEach((deviceId, rank) -> {
+                        if (!direct.containsKey(deviceId)) {
+                            merged.merge(deviceId, rank, (a, b) -> a >= b ? a : b);
+                        }
+                    });
+                }
+            }
+            merged.putAll(direct);
+            return DevicePermissionTable.of(merged);
+        }
+    }
+}
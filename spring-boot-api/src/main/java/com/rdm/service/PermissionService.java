@@ -1,62 +1,39 @@
 package com.rdm.service;
 
-import com.rdm.model.Device;
 import com.rdm.model.User;
 import com.rdm.model.UserDevice;
-import com.rdm.model.UserDeviceId;
-import com.rdm.repository.DeviceRepository;
-import com.rdm.repository.GroupDeviceRepository;
-import com.rdm.repository.GroupMemberRepository;
-import com.rdm.repository.UserDeviceRepository;
 import com.rdm.security.UserPrincipal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class PermissionService {
 
-    private final UserDeviceRepository userDeviceRepository;
-    private final GroupDeviceRepository groupDeviceRepository;
-    private final GroupMemberRepository groupMemberRepository;
-    private final DeviceRepository deviceRepository;
+    private final PermissionIndex permissionIndex;
+    private final Timer grantedTimer;
+    private final Timer deniedTimer;
 
-    public PermissionService(UserDeviceRepository userDeviceRepository,
-            GroupDeviceRepository groupDeviceRepository,
-            GroupMemberRepository groupMemberRepository,
-            DeviceRepository deviceRepository) {
-        this.userDeviceRepository = userDeviceRepository;
-        this.groupDeviceRepository = groupDeviceRepository;
-        this.groupMemberRepository = groupMemberRepository;
-        this.deviceRepository = deviceRepository;
+    public PermissionService(PermissionIndex permissionIndex, MeterRegistry meterRegistry) {
+        this.permissionIndex = permissionIndex;
+        this.grantedTimer = checkTimer(meterRegistry, "granted");
+        this.deniedTimer = checkTimer(meterRegistry, "denied");
     }
 
     public boolean hasDeviceAccess(Integer userId, Integer deviceId, UserDevice.PermissionType requiredPermission) {
+        long start = System.nanoTime();
         User user = getCurrentUser();
 
-        // Admin has access to all devices
-        if (user.getRole() == User.Role.admin) {
-            return true;
-        }
+        // Admin has access to all devices; otherwise the direct grant, or the highest
+        // group grant where there is none, served from the in-memory index
+        boolean granted = user.getRole() == User.Role.admin
+                || permissionIndex.hasPermission(userId, deviceId, requiredPermission);
 
-        // Check direct user permissions
-        Optional<UserDevice> userDevice = userDeviceRepository.findByUserIdAndDeviceId(userId, deviceId);
-        if (userDevice.isPresent()) {
-            return hasPermission(userDevice.get().getPermission(), requiredPermission);
-        }
-
-        // Check group permissions
-        List<com.rdm.model.GroupDevice> groupDevices = groupDeviceRepository.findDevicesByUserGroups(userId);
-        for (com.rdm.model.GroupDevice gd : groupDevices) {
-            if (gd.getDeviceId().equals(deviceId) && hasPermission(gd.getPermission(), requiredPermission)) {
-                return true;
-            }
-        }
-
-        return false;
+        (granted ? grantedTimer : deniedTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return granted;
     }
 
     public boolean canViewDevice(Integer userId, Integer deviceId) {
@@ -67,39 +44,6 @@ public class PermissionService {
         return hasDeviceAccess(userId, deviceId, UserDevice.PermissionType.control);
     }
 
-    private boolean hasPermission(com.rdm.model.GroupDevice.PermissionType userPermission,
-            UserDevice.PermissionType requiredPermission) {
-        return hasPermission(convertPermission(userPermission), requiredPermission);
-    }
-
-    private boolean hasPermission(UserDevice.PermissionType userPermission,
-            UserDevice.PermissionType requiredPermission) {
-        if (userPermission == requiredPermission) {
-            return true;
-        }
-
-        // Permission hierarchy: control > write > read > view
-        switch (requiredPermission) {
-            case view:
-                return true; // All permissions can view
-            case read:
-                return userPermission == UserDevice.PermissionType.read ||
-                        userPermission == UserDevice.PermissionType.write ||
-                        userPermission == UserDevice.PermissionType.control;
-            case write:
-                return userPermission == UserDevice.PermissionType.write ||
-                        userPermission == UserDevice.PermissionType.control;
-            case control:
-                return userPermission == UserDevice.PermissionType.control;
-            default:
-                return false;
-        }
-    }
-
-    private UserDevice.PermissionType convertPermission(com.rdm.model.GroupDevice.PermissionType permission) {
-        return UserDevice.PermissionType.valueOf(permission.name());
-    }
-
     public boolean isAdmin() {
         User user = getCurrentUser();
         return user.getRole() == User.Role.admin;
@@ -114,4 +58,11 @@ public class PermissionService {
     public Integer getCurrentUserId() {
         return getCurrentUser().getId();
     }
+
+    private static Timer checkTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("rdm.permissions.check")
+                .description("Device permission checks, including grant version checks and index reloads")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
 }
@@ -0,0 +1,301 @@
+package com.rdm.service;
+
+import com.rdm.dto.WaitlistTicketDTO;
+import com.rdm.exception.BadRequestException;
+import com.rdm.exception.ResourceNotFoundException;
+import com.rdm.exception.SessionLimitExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Enforces the maximum number of concurrent sessions per user and per device.
+ *
+ * Open sessions are counted in one atomic counter per user and per device,
+ * incremented with compare-and-set so a slot is never handed out past the
+ * limit and no query is needed. A slot is taken when a connection is initiated
+ * and given back when the session leaves {@link ActiveSessionRegistry}.
+ *
+ * With the waitlist enabled, a connection over the limit gets a ticket instead
+ * of an error. Tickets are granted in order as slots are released; a granted
+ * ticket holds its slot until the client claims it by initiating again.
+ */
+@Component
+public class SessionLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionLimiter.class);
+
+    private enum Limit {
+        USER, DEVICE
+    }
+
+    private enum TicketState {
+        WAITING, GRANTED
+    }
+
+    private final Map<Integer, AtomicInteger> userSessions = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicInteger> deviceSessions = new ConcurrentHashMap<>();
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    // Waiting tickets in arrival order; guarded by its own monitor
+    private final Deque<Ticket> waitlist = new ArrayDeque<>();
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${rdm.sessions.max-per-user:0}")
+    private int maxPerUser;
+
+    @Value("${rdm.sessions.max-per-device:0}")
+    private int maxPerDevice;
+
+    @Value("${rdm.sessions.waitlist.enabled:false}")
+    private boolean waitlistEnabled;
+
+    @Value("${rdm.sessions.waitlist.ticket-timeout:PT1M}")
+    private Duration ticketTimeout;
+
+    @Value("${rdm.sessions.waitlist.grant-timeout:PT1M}")
+    private Duration grantTimeout;
+
+    public SessionLimiter(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Take a session slot for the user on the device. The slot is given back
+     * if the current transaction rolls back.
+     *
+     * @throws SessionLimitExceededException if a limit is reached, carrying a
+     *                                       waitlist ticket when the waitlist is enabled
+     */
+    public void acquire(Integer userId, Integer deviceId) {
+        Limit exceeded = tryAcquire(userId, deviceId);
+        if (exceeded == null) {
+            releaseOnRollback(userId, deviceId);
+            return;
+        }
+
+        String message = exceeded == Limit.USER
+                ? "You already have the maximum of " + maxPerUser + " open connections"
+                : "Device already has the maximum of " + maxPerDevice + " concurrent connections";
+        if (!waitlistEnabled) {
+            throw new SessionLimitExceededException(message);
+        }
+
+        Ticket ticket = new Ticket(UUID.randomUUID().toString(), userId, deviceId, message);
+        tickets.put(ticket.id, ticket);
+        synchronized (waitlist) {
+            waitlist.addLast(ticket);
+        }
+        // A slot may have been released between the failed attempt and queueing
+        grantWaiting();
+        throw new SessionLimitExceededException(message, toDTO(ticket));
+    }
+
+    /**
+     * Use the slot held by a granted waitlist ticket. The slot is given back
+     * if the current transaction rolls back.
+     *
+     * @throws SessionLimitExceededException with the ticket if it is still waiting
+     */
+    public void claim(String ticketId, Integer userId, Integer deviceId) {
+        Ticket ticket = tickets.get(ticketId);
+        if (ticket == null || !ticket.userId.equals(userId) || !ticket.deviceId.equals(deviceId)) {
+            throw new BadRequestException("Unknown or expired waitlist ticket");
+        }
+        ticket.lastSeen = Instant.now();
+        if (ticket.state != TicketState.GRANTED || !tickets.remove(ticketId, ticket)) {
+            throw new SessionLimitExceededException(ticket.reason, toDTO(ticket));
+        }
+        releaseOnRollback(userId, deviceId);
+    }
+
+    public WaitlistTicketDTO getTicket(String ticketId, Integer userId) {
+        Ticket ticket = tickets.get(ticketId);
+        if (ticket == null || !ticket.userId.equals(userId)) {
+            throw new ResourceNotFoundException("Waitlist ticket", "id", ticketId);
+        }
+        ticket.lastSeen = Instant.now();
+        return toDTO(ticket);
+    }
+
+    public void cancelTicket(String ticketId, Integer userId) {
+        Ticket ticket = tickets.get(ticketId);
+        if (ticket == null || !ticket.userId.equals(userId)) {
+            throw new ResourceNotFoundException("Waitlist ticket", "id", ticketId);
+        }
+        discard(ticket);
+    }
+
+    /**
+     * Give back the slot of a session that ended.
+     */
+    public void release(Integer userId, Integer deviceId) {
+        decrement(userSessions.get(userId));
+        decrement(deviceSessions.get(deviceId));
+        if (waitlistEnabled) {
+            grantWaiting();
+        }
+    }
+
+    /**
+     * Count a session that is already open, regardless of the limits. Used for
+     * sessions loaded at startup.
+     */
+    public void track(Integer userId, Integer deviceId) {
+        counter(userSessions, userId).incrementAndGet();
+        counter(deviceSessions, deviceId).incrementAndGet();
+    }
+
+    @Scheduled(fixedDelayString = "${rdm.sessions.waitlist.sweep-interval:PT10S}")
+    public void expireTickets() {
+        if (tickets.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        for (Ticket ticket : tickets.values()) {
+            boolean expired = ticket.state == TicketState.GRANTED
+                    ? ticket.grantedAt.plus(grantTimeout).isBefore(now)
+                    : ticket.lastSeen.plus(ticketTimeout).isBefore(now);
+            if (expired) {
+                logger.debug("Waitlist ticket {} for device {} expired while {}",
+                        ticket.id, ticket.deviceId, ticket.state);
+                discard(ticket);
+            }
+        }
+    }
+
+    private void discard(Ticket ticket) {
+        if (!tickets.remove(ticket.id, ticket)) {
+            return;
+        }
+        synchronized (waitlist) {
+            waitlist.remove(ticket);
+        }
+        if (ticket.state == TicketState.GRANTED) {
+            release(ticket.userId, ticket.deviceId);
+        }
+    }
+
+    private void grantWaiting() {
+        synchronized (waitlist) {
+            Iterator<Ticket> iterator = waitlist.iterator();
+            while (iterator.hasNext()) {
+                Ticket ticket = iterator.next();
+                if (!tickets.containsKey(ticket.id)) {
+                    iterator.remove();
+                } else if (tryAcquire(ticket.userId, ticket.deviceId) == null) {
+                    ticket.grantedAt = Instant.now();
+                    ticket.state = TicketState.GRANTED;
+                    iterator.remove();
+                    eventPublisher.publishEvent(LiveEvent.connection(LiveEvent.WAITLIST_GRANTED,
+                            ticket.userId, ticket.deviceId,
+                            Map.of("ticketId", ticket.id, "deviceId", ticket.deviceId)));
+                }
+            }
+        }
+    }
+
+    private Limit tryAcquire(Integer userId, Integer deviceId) {
+        AtomicInteger user = counter(userSessions, userId);
+        if (!incrementBelow(user, maxPerUser)) {
+            return Limit.USER;
+        }
+        if (!incrementBelow(counter(deviceSessions, deviceId), maxPerDevice)) {
+            user.decrementAndGet();
+            return Limit.DEVICE;
+        }
+        return null;
+    }
+
+    private void releaseOnRollback(Integer userId, Integer deviceId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        release(userId, deviceId);
+                    }
+                }
+            });
+        }
+    }
+
+    private int positionOf(Ticket ticket) {
+        synchronized (waitlist) {
+            int position = 1;
+            for (Ticket waiting : waitlist) {
+                if (waiting == ticket) {
+                    return position;
+                }
+                if (waiting.deviceId.equals(ticket.deviceId)) {
+                    position++;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private WaitlistTicketDTO toDTO(Ticket ticket) {
+        boolean granted = ticket.state == TicketState.GRANTED;
+        return WaitlistTicketDTO.builder()
+                .ticketId(ticket.id)
+                .deviceId(ticket.deviceId)
+                .status(granted ? "granted" : "waiting")
+                .position(granted ? 0 : positionOf(ticket))
+                .reason(ticket.reason)
+                .build();
+    }
+
+    private static AtomicInteger counter(Map<Integer, AtomicInteger> counters, Integer id) {
+        return counters.computeIfAbsent(id, k -> new AtomicInteger());
+    }
+
+    private static boolean incrementBelow(AtomicInteger counter, int max) {
+        while (true) {
+            int current = counter.get();
+            if (max > 0 && current >= max) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private static void decrement(AtomicInteger counter) {
+        if (counter != null) {
+            counter.updateAndGet(current -> current > 0 ? current - 1 : 0);
+        }
+    }
+
+    private static final class Ticket {
+        private final String id;
+        private final Integer userId;
+        private final Integer deviceId;
+        private final String reason;
+        private volatile TicketState state = TicketState.WAITING;
+        private volatile Instant lastSeen = Instant.now();
+        private volatile Instant grantedAt;
+
+        Ticket(String id, Integer userId, Integer deviceId, String reason) {
+            this.id = id;
+            this.userId = userId;
+            this.deviceId = deviceId;
+            this.reason = reason;
+        }
+    }
+}
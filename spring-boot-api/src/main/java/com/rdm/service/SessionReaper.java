@@ -0,0 +1,127 @@
+package com.rdm.service;
+
+import com.rdm.model.ConnectionLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Closes sessions that stopped sending heartbeats, e.g. because the browser
+ * crashed before it could end the connection. Expired sessions are selected
+ * from app.connection_logs, whichever instance they were started on, and ended
+ * as {@code timeout} at their last heartbeat, in JDBC batches. Each run also
+ * drops sessions ended elsewhere from the local {@link ActiveSessionRegistry}.
+ */
+@Service
+public class SessionReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionReaper.class);
+
+    private static final String LAST_SEEN = "COALESCE(last_heartbeat, connection_start)";
+
+    private static final String EXPIRED_SQL = "SELECT id, user_id, device_id, connection_start "
+            + "FROM app.connection_logs "
+            + "WHERE connection_end IS NULL AND status = 'success' "
+            + "AND " + LAST_SEEN + " < now() - ? * INTERVAL '1 second' "
+            + "ORDER BY id LIMIT ?";
+
+    // connection_start pins the update to a single partition; the open and expiry checks
+    // leave sessions that were ended or sent a heartbeat in the meantime alone
+    private static final String TIMEOUT_SQL = "UPDATE app.connection_logs "
+            + "SET connection_end = " + LAST_SEEN + ", "
+            + "duration = GREATEST(0, CAST(EXTRACT(EPOCH FROM " + LAST_SEEN + " - connection_start) AS integer)), "
+            + "status = CAST(? AS app.connection_status) "
+            + "WHERE id = ? AND connection_start = ? AND connection_end IS NULL AND status = 'success' "
+            + "AND " + LAST_SEEN + " < now() - ? * INTERVAL '1 second'";
+
+    private final ActiveSessionRegistry activeSessionRegistry;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Counter reapedCounter;
+
+    @Value("${rdm.sessions.heartbeat-timeout:PT2M}")
+    private Duration heartbeatTimeout;
+
+    @Value("${rdm.sessions.reaper-batch-size:500}")
+    private int batchSize;
+
+    public SessionReaper(ActiveSessionRegistry activeSessionRegistry,
+                         JdbcTemplate jdbcTemplate,
+                         ApplicationEventPublisher eventPublisher,
+                         MeterRegistry meterRegistry) {
+        this.activeSessionRegistry = activeSessionRegistry;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.reapedCounter = Counter.builder("rdm.sessions.reaped")
+                .description("Connection sessions closed after missing heartbeats")
+                .register(meterRegistry);
+    }
+
+    // The first run waits one timeout, so clients that lost their heartbeats while
+    // every instance was down get to report in before they are reaped
+    @Scheduled(fixedDelayString = "${rdm.sessions.reaper-interval:PT30S}",
+            initialDelayString = "${rdm.sessions.heartbeat-timeout:PT2M}")
+    public void reapExpiredSessions() {
+        int expired = 0;
+        int closed = 0;
+        try {
+            List<ExpiredSession> batch;
+            do {
+                batch = jdbcTemplate.query(EXPIRED_SQL, (rs, rowNum) -> new ExpiredSession(rs.getInt(1),
+                        rs.getInt(2), rs.getInt(3), rs.getTimestamp(4)), heartbeatTimeout.getSeconds(), batchSize);
+                expired += batch.size();
+                closed += closeBatch(batch);
+            } while (batch.size() == batchSize);
+            activeSessionRegistry.removeEnded();
+        } catch (Exception e) {
+            // Sessions stay open and registered, so the next run retries them
+            logger.error("Failed to close expired sessions", e);
+        }
+        if (expired > 0) {
+            reapedCounter.increment(closed);
+            logger.info("Closed {} of {} sessions without a heartbeat for {}", closed, expired, heartbeatTimeout);
+        }
+    }
+
+    private int closeBatch(List<ExpiredSession> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(TIMEOUT_SQL, batch, batch.size(), (ps, session) -> {
+            ps.setString(1, ConnectionLog.ConnectionStatus.timeout.name());
+            ps.setInt(2, session.connectionLogId());
+            ps.setTimestamp(3, session.connectionStart());
+            ps.setLong(4, heartbeatTimeout.getSeconds());
+        });
+
+        int closed = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            ExpiredSession session = batch.get(i);
+            // 0 rows means the session was ended or sent a heartbeat since it was selected
+            if (counts[0][i] != 0) {
+                closed++;
+                activeSessionRegistry.remove(session.connectionLogId());
+                eventPublisher.publishEvent(LiveEvent.connection(LiveEvent.CONNECTION_ENDED,
+                        session.userId(), session.deviceId(),
+                        Map.of("connectionLogId", session.connectionLogId(),
+                                "deviceId", session.deviceId(),
+                                "status", ConnectionLog.ConnectionStatus.timeout.name())));
+            }
+        }
+        return closed;
+    }
+
+    private record ExpiredSession(int connectionLogId, int userId, int deviceId, Timestamp connectionStart) {
+    }
+}
@@ -0,0 +1,168 @@
+package com.rdm.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Non-blocking TCP connect prober. All in-flight connects are multiplexed on a
+ * single selector thread, and a semaphore bounds how many may be in flight at
+ * once, so probing tens of thousands of hosts never needs a thread per host.
+ */
+class TcpConnectProber implements Closeable {
+
+    record Result(boolean reachable, long latencyNanos) {
+    }
+
+    private static final long SELECT_INTERVAL_MS = 50;
+
+    private final Selector selector;
+    private final Semaphore permits;
+    private final Queue<Probe> registrations = new ConcurrentLinkedQueue<>();
+    private final Thread selectorThread;
+    private volatile boolean running = true;
+
+    TcpConnectProber(int maxConcurrency, ThreadFactory threadFactory) throws IOException {
+        this.selector = Selector.open();
+        this.permits = new Semaphore(maxConcurrency);
+        this.selectorThread = threadFactory.newThread(this::run);
+        this.selectorThread.start();
+    }
+
+    /**
+     * Start a connect to the address. Blocks while the maximum number of probes
+     * is already in flight.
+     */
+    CompletableFuture<Result> probe(InetSocketAddress address, long timeoutNanos) throws InterruptedException {
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        if (!running || address.isUnresolved()) {
+            future.complete(new Result(false, 0));
+            return future;
+        }
+
+        permits.acquire();
+        future.whenComplete((result, error) -> permits.release());
+
+        long start = System.nanoTime();
+        registrations.add(new Probe(address, start, start + timeoutNanos, future));
+        selector.wakeup();
+        return future;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select(SELECT_INTERVAL_MS);
+                registerPending();
+                completeConnected();
+                expireTimedOut();
+            }
+        } catch (IOException e) {
+            // Selector failure: fail everything still in flight below
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                finish(key, false);
+            }
+            Probe probe;
+            while ((probe = registrations.poll()) != null) {
+                probe.future.complete(new Result(false, 0));
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // Nothing left to release
+            }
+        }
+    }
+
+    private void registerPending() {
+        Probe probe;
+        while ((probe = registrations.poll()) != null) {
+            SocketChannel channel = null;
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                if (channel.connect(probe.address)) {
+                    channel.close();
+                    probe.complete(true);
+                } else {
+                    channel.register(selector, SelectionKey.OP_CONNECT, probe);
+                }
+            } catch (IOException e) {
+                closeQuietly(channel);
+                probe.complete(false);
+            }
+        }
+    }
+
+    private void completeConnected() {
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+            boolean connected;
+            try {
+                if (!((SocketChannel) key.channel()).finishConnect()) {
+                    continue;
+                }
+                connected = true;
+            } catch (IOException e) {
+                connected = false;
+            }
+            finish(key, connected);
+        }
+    }
+
+    private void expireTimedOut() {
+        long now = System.nanoTime();
+        for (SelectionKey key : selector.keys()) {
+            Probe probe = (Probe) key.attachment();
+            if (key.isValid() && now - probe.deadline >= 0) {
+                finish(key, false);
+            }
+        }
+    }
+
+    private void finish(SelectionKey key, boolean reachable) {
+        key.cancel();
+        closeQuietly(key.channel());
+        ((Probe) key.attachment()).complete(reachable);
+    }
+
+    private static void closeQuietly(Channel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Probe outcome is already decided
+            }
+        }
+    }
+
+    private record Probe(InetSocketAddress address, long start, long deadline, CompletableFuture<Result> future) {
+        void complete(boolean reachable) {
+            future.complete(new Result(reachable, System.nanoTime() - start));
+        }
+    }
+}
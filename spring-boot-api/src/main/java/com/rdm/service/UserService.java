@@ -7,6 +7,7 @@ import com.rdm.exception.BadRequestException;
 import com.rdm.exception.ResourceNotFoundException;
 import com.rdm.model.User;
 import com.rdm.repository.UserRepository;
+import com.rdm.security.UserPrincipalCache;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -20,15 +21,21 @@ public class UserService {
     private final PasswordEncoder passwordEncoder;
     private final PermissionService permissionService;
     private final AuditService auditService;
+    private final UserPrincipalCache userPrincipalCache;
+    private final ListingVersions listingVersions;
 
     public UserService(UserRepository userRepository,
             PasswordEncoder passwordEncoder,
             PermissionService permissionService,
-            AuditService auditService) {
+            AuditService auditService,
+            UserPrincipalCache userPrincipalCache,
+            ListingVersions listingVersions) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.permissionService = permissionService;
         this.auditService = auditService;
+        this.userPrincipalCache = userPrincipalCache;
+        this.listingVersions = listingVersions;
     }
 
     @Transactional(readOnly = true)
@@ -78,6 +85,7 @@ public class UserService {
                 .build();
 
         User savedUser = userRepository.save(user);
+        listingVersions.usersChanged();
 
         auditService.logAction(
                 com.rdm.model.AuditLog.AuditAction.create,
@@ -127,6 +135,8 @@ public class UserService {
         }
 
         User updatedUser = userRepository.save(user);
+        userPrincipalCache.invalidate(updatedUser.getId());
+        listingVersions.usersChanged();
 
         auditService.logAction(
                 com.rdm.model.AuditLog.AuditAction.update,
@@ -155,6 +165,8 @@ public class UserService {
 
         user.setIsActive(false);
         userRepository.save(user);
+        userPrincipalCache.invalidate(id);
+        listingVersions.usersChanged();
 
         auditService.logAction(
                 com.rdm.model.AuditLog.AuditAction.delete,
@@ -175,6 +187,8 @@ public class UserService {
 
         user.setRole(role);
         User updatedUser = userRepository.save(user);
+        userPrincipalCache.invalidate(updatedUser.getId());
+        listingVersions.usersChanged();
 
         auditService.logAction(
                 com.rdm.model.AuditLog.AuditAction.update,
@@ -0,0 +1,59 @@
+package com.rdm;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Embedded PostgreSQL with the schema from database/migrations, for tests that
+ * need the real tables, indexes and triggers.
+ */
+public final class TestDatabase {
+
+    private static final Path MIGRATIONS = Path.of("..", "database", "migrations");
+
+    private TestDatabase() {
+    }
+
+    /**
+     * Start PostgreSQL, apply the migrations in order, then run the given
+     * statements to add fixtures.
+     */
+    public static EmbeddedPostgres start(String... fixtures) {
+        try {
+            EmbeddedPostgres postgres = EmbeddedPostgres.start();
+            try (Connection connection = postgres.getPostgresDatabase().getConnection();
+                 Statement statement = connection.createStatement()) {
+                List<Path> migrations;
+                try (Stream<Path> files = Files.list(MIGRATIONS)) {
+                    migrations = files.filter(file -> file.toString().endsWith(".sql")).sorted().toList();
+                }
+                for (Path migration : migrations) {
+                    // Each file runs in a fresh psql session at init, so one file's search_path does not carry over
+                    statement.execute("RESET search_path");
+                    statement.execute(Files.readString(migration));
+                }
+                for (String fixture : fixtures) {
+                    statement.execute(fixture);
+                }
+            }
+            return postgres;
+        } catch (IOException | SQLException e) {
+            throw new IllegalStateException("Could not set up the test database", e);
+        }
+    }
+
+    /**
+     * JDBC URL for Spring's datasource, binding strings like the application does.
+     */
+    public static String jdbcUrl(EmbeddedPostgres postgres) {
+        return postgres.getJdbcUrl("postgres", "postgres") + "&stringtype=unspecified";
+    }
+}
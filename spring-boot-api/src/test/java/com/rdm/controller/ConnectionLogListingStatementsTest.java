@@ -0,0 +1,141 @@
+package com.rdm.controller;
+
+import com.rdm.TestDatabase;
+import com.rdm.repository.UserRepository;
+import com.rdm.security.UserPrincipal;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Statement budget of the connection log listings: a page is one query, plus a
+ * count for offset pagination, however many rows it holds. Counts come from
+ * Hibernate statistics around the second of two identical requests, so the
+ * device and permission lookups the first one caches are not counted.
+ */
+@SpringBootTest(properties = {
+        "rdm.probe.enabled=false",
+        "rdm.guacamole.history.enabled=false",
+        "rdm.guacamole.reconcile.cron=-",
+        "spring.jpa.show-sql=false",
+        // classpath: URIs only resolve inside the packaged jar; from target/classes the plain name does
+        "spring.jpa.properties.hibernate.javax.cache.uri=hibernate-cache.conf",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureMockMvc
+class ConnectionLogListingStatementsTest {
+
+    private static final int LOGS = 30;
+    private static final int PAGE_SIZE = 20;
+
+    private static final EmbeddedPostgres POSTGRES = startDatabase();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private UserPrincipal viewer;
+    private Integer deviceId;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url",
+                () -> TestDatabase.jdbcUrl(POSTGRES));
+    }
+
+    @BeforeEach
+    void loadFixtures() {
+        viewer = UserPrincipal.create(userRepository.findByUsername("listing-viewer").orElseThrow());
+        deviceId = deviceIdOf("listing-device");
+    }
+
+    @Test
+    void userListingWithOffsetRunsListAndCount() throws Exception {
+        assertStatements("/api/connections?size=" + PAGE_SIZE, 2);
+    }
+
+    @Test
+    void deviceListingWithOffsetRunsListAndCount() throws Exception {
+        assertStatements("/api/connections/device/" + deviceId + "/logs?size=" + PAGE_SIZE, 2);
+    }
+
+    @Test
+    void userListingWithCursorRunsOneStatement() throws Exception {
+        assertStatements("/api/connections/cursor?size=" + PAGE_SIZE, 1);
+    }
+
+    @Test
+    void deviceListingWithCursorRunsOneStatement() throws Exception {
+        assertStatements("/api/connections/device/" + deviceId + "/logs/cursor?size=" + PAGE_SIZE, 1);
+    }
+
+    private void assertStatements(String uri, long expected) throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        list(uri);
+        statistics.clear();
+        list(uri);
+        assertEquals(expected, statistics.getPrepareStatementCount(), uri);
+    }
+
+    private void list(String uri) throws Exception {
+        mockMvc.perform(get(uri).with(user(viewer)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(PAGE_SIZE))
+                .andExpect(jsonPath("$.content[0].deviceName").value("listing-device"));
+    }
+
+    private static Integer deviceIdOf(String name) {
+        try (Connection connection = POSTGRES.getPostgresDatabase().getConnection();
+             var statement = connection.prepareStatement("SELECT id FROM app.devices WHERE name = ?")) {
+            statement.setString(1, name);
+            var rs = statement.executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A viewer with {@value #LOGS} connections to one device it may view.
+     */
+    private static EmbeddedPostgres startDatabase() {
+        return TestDatabase.start(
+                "INSERT INTO app.users (username, email, password_hash, role) "
+                        + "VALUES ('listing-viewer', 'listing-viewer@example.com', 'x', 'viewer')",
+                "INSERT INTO app.devices (name, host, port, protocol) "
+                        + "VALUES ('listing-device', '10.0.0.1', 3389, 'rdp')",
+                "INSERT INTO app.user_devices (user_id, device_id, permission) "
+                        + "SELECT u.id, d.id, 'view' FROM app.users u, app.devices d "
+                        + "WHERE u.username = 'listing-viewer' AND d.name = 'listing-device'",
+                "INSERT INTO app.connection_logs (user_id, device_id, connection_start, "
+                        + "connection_end, duration, status) "
+                        + "SELECT u.id, d.id, now() - n * INTERVAL '1 hour', now() - n * INTERVAL '1 hour' "
+                        + "+ INTERVAL '10 minutes', 600, 'success' "
+                        + "FROM app.users u, app.devices d, generate_series(1, " + LOGS + ") n "
+                        + "WHERE u.username = 'listing-viewer' AND d.name = 'listing-device'");
+    }
+}
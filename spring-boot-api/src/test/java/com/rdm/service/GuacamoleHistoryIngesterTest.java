@@ -0,0 +1,127 @@
+package com.rdm.service;
+
+import com.rdm.TestDatabase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * History matching with every connection under the shared service account, so
+ * only start times and connections tell sessions apart.
+ */
+class GuacamoleHistoryIngesterTest {
+
+    private static final EmbeddedPostgres POSTGRES = TestDatabase.start(
+            "INSERT INTO app.users (id, username, email, password_hash, role) "
+                    + "SELECT n, 'user-' || n, 'user-' || n || '@example.com', 'x', 'operator' "
+                    + "FROM generate_series(1, 2) n",
+            "INSERT INTO guacamole_connection (connection_id, connection_name, protocol) "
+                    + "VALUES (7, 'shared', 'rdp'), (8, 'reconnect', 'rdp')",
+            "INSERT INTO app.devices (id, name, host, port, protocol, guacamole_conn_id) "
+                    + "VALUES (1, 'shared', '10.0.0.1', 3389, 'rdp', '7'), "
+                    + "(2, 'reconnect', '10.0.0.2', 3389, 'rdp', '8')");
+
+    private static final Instant T = Instant.now().truncatedTo(ChronoUnit.MINUTES).minus(Duration.ofHours(2));
+
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(POSTGRES.getPostgresDatabase());
+    private final List<Integer> unregistered = new ArrayList<>();
+    private final List<LiveEvent> events = new ArrayList<>();
+    private GuacamoleHistoryIngester ingester;
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        POSTGRES.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM app.connection_logs");
+        jdbcTemplate.update("DELETE FROM guacamole_connection_history");
+        jdbcTemplate.update("UPDATE app.guacamole_history_ingest SET last_history_id = 0, open_history_ids = '{}'");
+
+        ActiveSessionRegistry registry = new ActiveSessionRegistry(jdbcTemplate, null, new SimpleMeterRegistry()) {
+            @Override
+            public void unregister(Integer connectionLogId) {
+                unregistered.add(connectionLogId);
+            }
+        };
+        ingester = new GuacamoleHistoryIngester(jdbcTemplate,
+                new DataSourceTransactionManager(POSTGRES.getPostgresDatabase()), registry,
+                event -> events.add((LiveEvent) event), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(ingester, "enabled", true);
+        ReflectionTestUtils.setField(ingester, "batchSize", 1000);
+        ReflectionTestUtils.setField(ingester, "matchWindow", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(ingester, "maxOpenAge", Duration.ofHours(24));
+    }
+
+    @Test
+    void overlappingSessionsEndTheirOwnLogs() {
+        log(1, 1, 1, 0);
+        log(2, 2, 1, 60);
+        // Both closest to log 1; the second overlaps the first, so it must take log 2
+        history(1, 7, 5, 600);
+        history(2, 7, 20, 1200);
+
+        ingester.ingest();
+
+        assertEquals(at(600), end(1));
+        assertEquals(at(1200), end(2));
+        assertEquals(List.of(1, 2), unregistered);
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    void reconnectKeepsTheLogOpenUntilItsLastRowEnds() {
+        log(3, 1, 2, 0);
+        history(3, 8, 1, 300);
+        history(4, 8, 310, null);
+
+        ingester.ingest();
+
+        assertNull(end(3));
+        assertEquals(List.of(), unregistered);
+        assertEquals(List.of(), events);
+
+        jdbcTemplate.update("UPDATE guacamole_connection_history SET end_date = ? WHERE history_id = 4", at(1800));
+        ingester.ingest();
+
+        assertEquals(at(1800), end(3));
+        assertEquals(List.of(3), unregistered);
+    }
+
+    private void log(int id, int userId, int deviceId, int startSeconds) {
+        jdbcTemplate.update("INSERT INTO app.connection_logs (id, user_id, device_id, connection_start, status) "
+                + "VALUES (?, ?, ?, ?, 'success')", id, userId, deviceId, at(startSeconds));
+    }
+
+    private void history(int id, int connectionId, int startSeconds, Integer endSeconds) {
+        jdbcTemplate.update("INSERT INTO guacamole_connection_history (history_id, username, connection_id, "
+                        + "connection_name, start_date, end_date) VALUES (?, 'rdm-service', ?, 'c', ?, ?)",
+                id, connectionId, at(startSeconds), endSeconds != null ? at(endSeconds) : null);
+    }
+
+    private Timestamp end(int logId) {
+        return jdbcTemplate.queryForObject("SELECT connection_end FROM app.connection_logs WHERE id = ?",
+                Timestamp.class, logId);
+    }
+
+    private static Timestamp at(int seconds) {
+        return Timestamp.from(T.plusSeconds(seconds));
+    }
+}
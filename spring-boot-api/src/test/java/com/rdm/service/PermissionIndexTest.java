@@ -0,0 +1,101 @@
+package com.rdm.service;
+
+import com.rdm.TestDatabase;
+import com.rdm.model.UserDevice.PermissionType;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Permission index against the real grant tables and grant version trigger.
+ * Each test works on its own users, so the shared database can be changed.
+ */
+class PermissionIndexTest {
+
+    private static final int DIRECT_AND_GROUP = 1;
+    private static final int GROUPS_ONLY = 2;
+    private static final int DIRECT_ONLY = 3;
+    private static final int NEW_MEMBER = 4;
+    private static final int REVOKED = 5;
+
+    private static final EmbeddedPostgres POSTGRES = TestDatabase.start(
+            "INSERT INTO app.users (id, username, email, password_hash, role) "
+                    + "SELECT n, 'user-' || n, 'user-' || n || '@example.com', 'x', 'viewer' "
+                    + "FROM generate_series(1, 5) n",
+            "INSERT INTO app.devices (id, name, host, port, protocol) "
+                    + "SELECT n, 'device-' || n, '10.0.0.' || n, 3389, 'rdp' FROM generate_series(1, 3) n",
+            "INSERT INTO app.user_groups (id, name) VALUES (1, 'operators'), (2, 'support')",
+            "INSERT INTO app.group_devices (group_id, device_id, permission) "
+                    + "VALUES (1, 1, 'control'), (1, 2, 'read'), (2, 2, 'write')",
+            "INSERT INTO app.group_members (group_id, user_id) VALUES (1, 1), (1, 2), (2, 2)",
+            "INSERT INTO app.user_devices (user_id, device_id, permission) "
+                    + "VALUES (1, 1, 'view'), (3, 3, 'control'), (5, 3, 'control')");
+
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(POSTGRES.getPostgresDatabase());
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        POSTGRES.close();
+    }
+
+    @Test
+    void loadsDirectAndGroupGrants() {
+        PermissionIndex index = index(Duration.ofMinutes(5));
+
+        assertTrue(index.hasPermission(DIRECT_AND_GROUP, 2, PermissionType.read));
+        assertTrue(index.hasPermission(DIRECT_ONLY, 3, PermissionType.control));
+        assertFalse(index.hasPermission(DIRECT_ONLY, 1, PermissionType.view));
+    }
+
+    @Test
+    void directGrantDecidesOverGroupGrants() {
+        PermissionIndex index = index(Duration.ofMinutes(5));
+
+        assertTrue(index.hasPermission(DIRECT_AND_GROUP, 1, PermissionType.view));
+        assertFalse(index.hasPermission(DIRECT_AND_GROUP, 1, PermissionType.control));
+    }
+
+    @Test
+    void groupGrantsMergeToTheHighest() {
+        PermissionIndex index = index(Duration.ofMinutes(5));
+
+        assertTrue(index.hasPermission(GROUPS_ONLY, 2, PermissionType.write));
+        assertFalse(index.hasPermission(GROUPS_ONLY, 2, PermissionType.control));
+        assertTrue(index.hasPermission(GROUPS_ONLY, 1, PermissionType.control));
+    }
+
+    @Test
+    void revokedGrantStopsApplyingOnNextCheck() {
+        PermissionIndex index = index(Duration.ZERO);
+        assertTrue(index.hasPermission(REVOKED, 3, PermissionType.control));
+        long version = index.version();
+
+        jdbcTemplate.update("DELETE FROM app.user_devices WHERE user_id = ?", REVOKED);
+
+        assertFalse(index.hasPermission(REVOKED, 3, PermissionType.view));
+        assertEquals(version + 1, index.version());
+    }
+
+    @Test
+    void membershipChangeWaitsForTheCheckInterval() {
+        PermissionIndex index = index(Duration.ofMinutes(5));
+        assertFalse(index.hasPermission(NEW_MEMBER, 1, PermissionType.control));
+
+        jdbcTemplate.update("INSERT INTO app.group_members (group_id, user_id) VALUES (1, ?)", NEW_MEMBER);
+
+        assertFalse(index.hasPermission(NEW_MEMBER, 1, PermissionType.control));
+        assertTrue(index(Duration.ZERO).hasPermission(NEW_MEMBER, 1, PermissionType.control));
+    }
+
+    private PermissionIndex index(Duration checkInterval) {
+        return new PermissionIndex(jdbcTemplate, checkInterval);
+    }
+}
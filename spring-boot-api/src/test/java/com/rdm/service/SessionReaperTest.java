@@ -0,0 +1,107 @@
+package com.rdm.service;
+
+import com.rdm.TestDatabase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two instances sharing app.connection_logs: heartbeats taken by one keep the
+ * session alive for the other's reaper, and a session reaped by one leaves the
+ * other's registry on its next run.
+ */
+class SessionReaperTest {
+
+    private static final EmbeddedPostgres POSTGRES = TestDatabase.start(
+            "INSERT INTO app.users (id, username, email, password_hash, role) "
+                    + "VALUES (1, 'operator', 'operator@example.com', 'x', 'operator')",
+            "INSERT INTO app.devices (id, name, host, port, protocol) VALUES (1, 'device', '10.0.0.1', 3389, 'rdp')");
+
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(POSTGRES.getPostgresDatabase());
+    private final List<LiveEvent> events = new ArrayList<>();
+    private ActiveSessionRegistry first;
+    private ActiveSessionRegistry second;
+    private SessionReaper reaper;
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        POSTGRES.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM app.connection_logs");
+        jdbcTemplate.update("INSERT INTO app.connection_logs (id, user_id, device_id, connection_start, status) "
+                + "VALUES (1, 1, 1, now() - INTERVAL '10 minutes', 'success'), "
+                + "(2, 1, 1, now() - INTERVAL '10 minutes', 'success')");
+
+        first = registry();
+        second = registry();
+        reaper = new SessionReaper(second, jdbcTemplate, event -> events.add((LiveEvent) event),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(reaper, "heartbeatTimeout", Duration.ofMinutes(2));
+        ReflectionTestUtils.setField(reaper, "batchSize", 1);
+    }
+
+    @Test
+    void heartbeatOnAnotherInstanceKeepsTheSessionOpen() {
+        assertTrue(first.heartbeat(1, 1));
+
+        reaper.reapExpiredSessions();
+
+        assertNull(connectionEnd(1));
+        Map<String, Object> reaped = jdbcTemplate.queryForMap(
+                "SELECT status::text AS status, duration FROM app.connection_logs WHERE id = 2");
+        assertEquals("timeout", reaped.get("status"));
+        assertEquals(0, reaped.get("duration"));
+        assertEquals(1, events.size());
+        assertEquals(List.of(1), second.getSessions().stream()
+                .map(ActiveSessionRegistry.Session::getConnectionLogId).toList());
+    }
+
+    @Test
+    void heartbeatChecksOwnerAndOpenSession() {
+        assertFalse(first.heartbeat(1, 2));
+        assertTrue(first.heartbeat(1, null));
+
+        reaper.reapExpiredSessions();
+
+        assertFalse(first.heartbeat(2, 1));
+    }
+
+    @Test
+    void sessionsReapedElsewhereLeaveTheRegistry() {
+        reaper.reapExpiredSessions();
+
+        assertEquals(2, first.size());
+        assertEquals(2, first.removeEnded());
+        assertEquals(0, first.size());
+    }
+
+    private ActiveSessionRegistry registry() {
+        ActiveSessionRegistry registry = new ActiveSessionRegistry(jdbcTemplate,
+                new SessionLimiter(event -> { }), new SimpleMeterRegistry());
+        registry.loadOpenSessions();
+        return registry;
+    }
+
+    private Object connectionEnd(int id) {
+        return jdbcTemplate.queryForObject("SELECT connection_end FROM app.connection_logs WHERE id = ?",
+                Object.class, id);
+    }
+}